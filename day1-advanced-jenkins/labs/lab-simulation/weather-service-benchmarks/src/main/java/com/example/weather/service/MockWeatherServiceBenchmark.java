@@ -0,0 +1,38 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mock lookups for a pre-configured city and for a city that gets random data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MockWeatherServiceBenchmark {
+
+    private final MockWeatherService mockWeatherService = new MockWeatherService();
+
+    @Benchmark
+    public WeatherData knownCity() {
+        return mockWeatherService.getMockWeatherData("Bucharest");
+    }
+
+    @Benchmark
+    public WeatherData unknownCity() {
+        return mockWeatherService.getMockWeatherData("Cluj-Napoca");
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared {@link MockWeatherService} hammered from all cores, as in load-test mode.
+ * Compare {@code -t 1} with the default (one thread per core) to check scaling.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class MockWeatherServiceThroughputBenchmark {
+
+    private final MockWeatherService mockWeatherService = new MockWeatherService();
+
+    @Benchmark
+    public WeatherData knownCity() {
+        return mockWeatherService.getMockWeatherData("Bucharest");
+    }
+
+    @Benchmark
+    public WeatherData unknownCity() {
+        return mockWeatherService.getMockWeatherData("Cluj-Napoca");
+    }
+}
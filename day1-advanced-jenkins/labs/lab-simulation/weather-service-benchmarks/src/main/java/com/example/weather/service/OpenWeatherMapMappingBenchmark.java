@@ -0,0 +1,81 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.OpenWeatherMapResponse;
+import com.example.weather.model.WeatherData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a full OpenWeatherMap payload and mapping it to {@link WeatherData},
+ * as done for every real API response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpenWeatherMapMappingBenchmark {
+
+    static final byte[] RESPONSE = """
+            {"coord":{"lon":26.1063,"lat":44.4323},
+             "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04d"}],
+             "base":"stations",
+             "main":{"temp":22.54,"feels_like":22.31,"temp_min":21.08,"temp_max":23.96,
+                     "pressure":1013,"humidity":65,"sea_level":1013,"grnd_level":1001},
+             "visibility":10000,"wind":{"speed":3.6,"deg":120,"gust":5.2},
+             "clouds":{"all":75},"dt":1726502400,
+             "sys":{"type":2,"id":2032494,"country":"RO","sunrise":1726458310,"sunset":1726503577},
+             "timezone":10800,"id":683506,"name":"Bucharest","cod":200}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private ObjectReader responseReader;
+    private OpenWeatherMapResponse decodedResponse;
+    private OpenWeatherMapService openWeatherMapService;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        responseReader = objectMapper.readerFor(OpenWeatherMapResponse.class);
+        decodedResponse = responseReader.readValue(RESPONSE);
+        openWeatherMapService = new OpenWeatherMapService("benchmark", 5000, Duration.ZERO, 1, WebClient.create(),
+                CircuitBreakerRegistry.ofDefaults(), RetryRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public OpenWeatherMapResponse decode() throws IOException {
+        return responseReader.readValue(RESPONSE);
+    }
+
+    @Benchmark
+    public WeatherData map() {
+        return openWeatherMapService.mapToWeatherData(decodedResponse);
+    }
+
+    @Benchmark
+    public WeatherData decodeAndMap() throws IOException {
+        return openWeatherMapService.mapToWeatherData(responseReader.readValue(RESPONSE));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherResponse;
+import com.example.weather.model.WeatherData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the API response from a reading and serializing it with the
+ * Jackson configuration Spring MVC uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeatherResponseBenchmark {
+
+    private final WeatherService weatherService = new WeatherService();
+    private final WeatherData weatherData = new WeatherData(
+            "Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock");
+    private WeatherResponse weatherResponse;
+    private ObjectWriter responseWriter;
+
+    @Setup
+    public void setUp() {
+        weatherResponse = weatherService.convertToResponse(weatherData);
+        responseWriter = Jackson2ObjectMapperBuilder.json().build().writerFor(WeatherResponse.class);
+    }
+
+    @Benchmark
+    public WeatherResponse convertToResponse() {
+        return weatherService.convertToResponse(weatherData);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return responseWriter.writeValueAsBytes(weatherResponse);
+    }
+}
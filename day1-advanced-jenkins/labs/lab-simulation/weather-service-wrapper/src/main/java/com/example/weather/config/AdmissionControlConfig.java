@@ -0,0 +1,34 @@
+package com.example.weather.config;
+
+import com.example.weather.controller.AdmissionControlFilter;
+import com.example.weather.service.AdaptiveConcurrencyLimiter;
+import com.example.weather.service.ClientRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers {@link AdmissionControlFilter} for the weather API only, so actuator probes and the
+ * H2 console are never rate limited or shed. {@code weather.admission.enabled=false} turns the
+ * filter into a pass-through without changing the bean graph.
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            ClientRateLimiter rateLimiter,
+            AdaptiveConcurrencyLimiter concurrencyLimiter,
+            @Value("${weather.admission.enabled:true}") boolean enabled,
+            @Value("${weather.admission.rate-limit.real-api-cost:5}") int realApiCost,
+            @Value("${weather.admission.client-id-header:}") String clientIdHeader,
+            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionControlFilter(rateLimiter, concurrencyLimiter, enabled, realApiCost,
+                        clientIdHeader, meterRegistry));
+        registration.addUrlPatterns("/api/weather", "/api/weather/*");
+        return registration;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.weather.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String WEATHER_CACHE = "weather";
+
+    /**
+     * Switches the Caffeine caches to async mode so that {@code @Cacheable(sync = true)}
+     * methods returning {@code Mono} share a single in-flight upstream call per key.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> asyncCacheModeCustomizer() {
+        return cacheManager -> cacheManager.setAsyncCacheMode(true);
+    }
+}
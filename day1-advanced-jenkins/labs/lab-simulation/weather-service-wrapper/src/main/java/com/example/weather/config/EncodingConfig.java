@@ -0,0 +1,24 @@
+package com.example.weather.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+/**
+ * Binary responses: clients sending {@code Accept: application/cbor} get CBOR instead of JSON,
+ * with the same fields. Response compression is configured with {@code server.compression.*}.
+ */
+@Configuration
+public class EncodingConfig {
+
+    /**
+     * Built from Boot's {@link Jackson2ObjectMapperBuilder}, so CBOR uses the same Jackson settings
+     * as JSON (ISO timestamps, registered modules) instead of the framework's plain defaults.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
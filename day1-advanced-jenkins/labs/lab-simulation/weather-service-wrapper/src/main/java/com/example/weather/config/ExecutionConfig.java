@@ -0,0 +1,42 @@
+package com.example.weather.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Selects where blocking persistence work runs. With {@code spring.threads.virtual.enabled=true}
+ * Tomcat serves requests on virtual threads and JPA calls get a virtual thread each;
+ * otherwise they share Reactor's bounded elastic pool.
+ * <p>
+ * Pinning review: a virtual thread that blocks inside a {@code synchronized} block holds on to
+ * its carrier. The locks on the persistence path ({@link com.example.weather.service.CityRegistry},
+ * {@link com.example.weather.service.WeatherDataWriter}, {@link com.example.weather.service.WeatherStats})
+ * are {@code java.util.concurrent} locks, which release it. Only blocking JPA work may run on this
+ * scheduler: callers publish back onto {@code Schedulers.parallel()} afterwards. A
+ * {@code -Djdk.tracePinnedThreads=full} run of {@code ThreadModeBenchmarkTest} reported a carrier
+ * pinned in {@code ConcurrentHashMap.compute} under Caffeine's cache lookup while a first-seen
+ * city's whole lookup stayed on the persistence thread. HikariCP, Hibernate and H2 have not been
+ * traced since that fix; re-run the trace after upgrading any of them or adding a
+ * {@code synchronized} block to the persistence path.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Scheduler persistenceScheduler() {
+        return Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "persistence-virtual");
+    }
+
+    @Bean(name = "persistenceScheduler")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public Scheduler platformPersistenceScheduler() {
+        return Schedulers.boundedElastic();
+    }
+}
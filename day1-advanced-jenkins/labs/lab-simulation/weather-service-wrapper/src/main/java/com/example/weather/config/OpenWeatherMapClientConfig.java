@@ -0,0 +1,56 @@
+package com.example.weather.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * HTTP client for OpenWeatherMap: a dedicated keep-alive connection pool with
+ * idle/lifetime eviction and connect/response timeouts. Pool gauges are published as
+ * {@code reactor.netty.connection.provider.*}.
+ */
+@Configuration
+public class OpenWeatherMapClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openWeatherMapConnectionProvider(
+            @Value("${weather.api.pool.max-connections:100}") int maxConnections,
+            @Value("${weather.api.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+            @Value("${weather.api.pool.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+            @Value("${weather.api.pool.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${weather.api.pool.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${weather.api.pool.evict-interval:30s}") Duration evictInterval) {
+        return ConnectionProvider.builder("openWeatherMap")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient openWeatherMapWebClient(WebClient.Builder webClientBuilder,
+                                             ConnectionProvider openWeatherMapConnectionProvider,
+                                             @Value("${weather.api.base-url:http://api.openweathermap.org/data/2.5}") String baseUrl,
+                                             @Value("${weather.api.timeout:5000}") long timeoutMillis,
+                                             @Value("${weather.api.connect-timeout:2000}") int connectTimeoutMillis) {
+        HttpClient httpClient = HttpClient.create(openWeatherMapConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(timeoutMillis));
+        return webClientBuilder
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.weather.config;
+
+import com.example.weather.service.HotCityRefresher;
+import com.example.weather.service.WeatherDataWriter;
+import com.example.weather.service.WeatherMetrics;
+import com.example.weather.service.WeatherRetentionJob;
+import com.example.weather.service.WeatherStats;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup settings for the {@code fast-start} profile, which turns on
+ * {@code spring.main.lazy-initialization}.
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Beans with {@code @Scheduled} or startup listener methods, and the lookup meters, are
+     * still created eagerly: a lazy bean that nothing injects would never be scheduled, and
+     * the stats rebuild and cache warm-up must finish before the readiness probe turns UP.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter backgroundTaskBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(WeatherDataWriter.class, WeatherStats.class,
+                HotCityRefresher.class, WeatherRetentionJob.class, WeatherMetrics.class);
+    }
+}
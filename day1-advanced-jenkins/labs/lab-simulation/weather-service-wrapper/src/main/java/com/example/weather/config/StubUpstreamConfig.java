@@ -0,0 +1,37 @@
+package com.example.weather.config;
+
+import com.example.weather.stub.LatencyDistribution;
+import com.example.weather.stub.OpenWeatherMapStub;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * The {@code stub-upstream} profile runs an {@link OpenWeatherMapStub} inside the application and
+ * points {@code weather.api.base-url} at it, so {@code useRealApi=true} works without network
+ * access. Settings are in {@code application-stub-upstream.properties}.
+ */
+@Configuration
+@Profile("stub-upstream")
+public class StubUpstreamConfig {
+
+    @Bean
+    public OpenWeatherMapStub openWeatherMapStub(
+            @Value("${weather.stub.host:localhost}") String host,
+            @Value("${weather.stub.port:8089}") int port,
+            @Value("${weather.stub.latency.distribution:lognormal}") String distribution,
+            @Value("${weather.stub.latency.min:20ms}") Duration min,
+            @Value("${weather.stub.latency.max:200ms}") Duration max,
+            @Value("${weather.stub.latency.median:80ms}") Duration median,
+            @Value("${weather.stub.latency.p99:400ms}") Duration p99,
+            @Value("${weather.stub.error-rate:0.01}") double errorRate,
+            @Value("${weather.stub.timeout-rate:0.001}") double timeoutRate,
+            @Value("${weather.stub.seed:42}") long seed) {
+        LatencyDistribution latency = new LatencyDistribution(LatencyDistribution.Type.parse(distribution),
+                min, max, median, p99);
+        return new OpenWeatherMapStub(host, port, latency, errorRate, timeoutRate, seed);
+    }
+}
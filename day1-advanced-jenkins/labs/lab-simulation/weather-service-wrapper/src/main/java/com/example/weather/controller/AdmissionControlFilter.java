@@ -0,0 +1,209 @@
+package com.example.weather.controller;
+
+import com.example.weather.service.AdaptiveConcurrencyLimiter;
+import com.example.weather.service.ClientRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for {@code /api/weather}. Each request first pays tokens from its client's
+ * bucket (429 when empty) and then needs a slot under the adaptive concurrency limit (503 when
+ * full). Lookups with {@code useRealApi=true} cost more tokens, since they fan out to
+ * OpenWeatherMap. A batch costs as much as its cities looked up one by one; its size is only
+ * known once the body is read, so the filter leaves a {@link BatchCharge} in the request for the
+ * controller to pay with. Live streams and exports are long-lived by design, so they are only
+ * rate limited: their durations would read as overload to the concurrency limiter.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    static final String BATCH_CHARGE_ATTRIBUTE = "weather.admission.batchCharge";
+
+    private static final String BASE_PATH = "/api/weather";
+
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final boolean enabled;
+    private final int realApiCost;
+    private final String clientIdHeader;
+    private final Counter admitted;
+    private final Counter rateLimited;
+    private final Counter shed;
+
+    public AdmissionControlFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                  boolean enabled, int realApiCost, String clientIdHeader,
+                                  MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.enabled = enabled;
+        this.realApiCost = realApiCost;
+        this.clientIdHeader = clientIdHeader;
+        this.admitted = decisionCounter(meterRegistry, "admitted");
+        this.rateLimited = decisionCounter(meterRegistry, "rate-limited");
+        this.shed = decisionCounter(meterRegistry, "shed");
+        Gauge.builder("weather.admission.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive limit on weather requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("weather.admission.in-flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Weather requests in flight under the adaptive limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Charges a batch for its cities once its body has been read.
+     */
+    @FunctionalInterface
+    interface BatchCharge {
+
+        /**
+         * @return 0 when admitted, otherwise the seconds until the client can afford the batch
+         */
+        long tryAcquire(int cities, boolean useRealApi);
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("weather.admission")
+                .description("Admission decisions for weather API requests")
+                .tag("decision", decision)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || path(request).equals(BASE_PATH + "/health");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        String clientId = clientId(request);
+        long waitNanos = rateLimiter.tryAcquire(clientId, cost(request, path));
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds(waitNanos), "Rate limit exceeded");
+            return;
+        }
+        if (path.equals(BASE_PATH + "/batch")) {
+            request.setAttribute(BATCH_CHARGE_ATTRIBUTE, (BatchCharge) (cities, useRealApi) -> {
+                long batchWaitNanos = rateLimiter.tryAcquire(clientId, cities * (useRealApi ? realApiCost : 1));
+                if (batchWaitNanos > 0) {
+                    rateLimited.increment();
+                    return retryAfterSeconds(batchWaitNanos);
+                }
+                return 0;
+            });
+        }
+        if (path.startsWith(BASE_PATH + "/stream/") || path.equals(BASE_PATH + "/export")) {
+            admitted.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            shed.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server is at capacity");
+            return;
+        }
+        admitted.increment();
+        long start = System.nanoTime();
+        Release release = new Release(start);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Reactive handlers finish on another thread; hold the slot until the response completes
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private int cost(HttpServletRequest request, String path) {
+        if (path.equals(BASE_PATH + "/batch")) {
+            // Paid through the BatchCharge; a client still paying off a larger one is turned away here
+            return 0;
+        }
+        return Boolean.parseBoolean(request.getParameter("useRealApi")) ? realApiCost : 1;
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L);
+    }
+
+    private String clientId(HttpServletRequest request) {
+        if (clientIdHeader != null && !clientIdHeader.isBlank()) {
+            String clientId = request.getHeader(clientIdHeader);
+            if (clientId != null && !clientId.isBlank()) {
+                return clientId.trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds,
+                               String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":\"error\",\"description\":\"" + message + "\"}");
+    }
+
+    /**
+     * Releases the concurrency slot exactly once, whichever of completion, timeout or error comes first.
+     */
+    private final class Release implements AsyncListener, Runnable {
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Release(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Starting async again clears the listeners; stay registered until the request really ends
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -1,66 +1,220 @@
 package com.example.weather.controller;
 
+import com.example.weather.dto.WeatherBatchRequest;
+import com.example.weather.dto.WeatherPage;
 import com.example.weather.dto.WeatherResponse;
-import com.example.weather.model.WeatherData;
+import com.example.weather.model.WeatherResolution;
+import com.example.weather.service.CityRegistry;
+import com.example.weather.service.WeatherExportService;
 import com.example.weather.service.WeatherService;
+import com.example.weather.service.WeatherStreamService;
+import com.example.weather.service.WeatherVersions;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/weather")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = WeatherController.NEXT_CURSOR_HEADER)
 public class WeatherController {
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
     @Autowired
     private WeatherService weatherService;
     
+    @Autowired
+    private WeatherStreamService weatherStreamService;
+    
+    @Autowired
+    private WeatherExportService weatherExportService;
+    
+    @Autowired
+    private WeatherVersions weatherVersions;
+    
+    @Autowired
+    private CityRegistry cityRegistry;
+    
+    @Value("${weather.batch.max-cities:50}")
+    private int maxBatchCities;
+    
     @GetMapping
-    public ResponseEntity<WeatherResponse> getWeather(
+    public Mono<ResponseEntity<WeatherResponse>> getWeather(
             @RequestParam String city,
             @RequestParam(defaultValue = "false") boolean useRealApi) {
         
-        try {
-            WeatherResponse response = weatherService.getWeatherData(city, useRealApi);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            WeatherResponse errorResponse = new WeatherResponse();
-            errorResponse.setCity(city);
-            errorResponse.setStatus("error");
-            errorResponse.setDescription("Error fetching weather data: " + e.getMessage());
-            return ResponseEntity.internalServerError().body(errorResponse);
+        return weatherService.getWeatherData(city, useRealApi)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.internalServerError()
+                        .body(WeatherResponse.error(city, "Error fetching weather data: " + e.getMessage()))));
+    }
+    
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<WeatherResponse>>> getWeatherBatch(
+            @Valid @RequestBody WeatherBatchRequest request,
+            @RequestAttribute(name = AdmissionControlFilter.BATCH_CHARGE_ATTRIBUTE, required = false)
+            AdmissionControlFilter.BatchCharge batchCharge) {
+        
+        if (request.getCities().size() > maxBatchCities) {
+            return Mono.just(ResponseEntity.badRequest().build());
         }
+        if (batchCharge != null) {
+            long retryAfterSeconds = batchCharge.tryAcquire(request.getCities().size(), request.isUseRealApi());
+            if (retryAfterSeconds > 0) {
+                return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                        .build());
+            }
+        }
+        return weatherService.getWeatherDataBatch(request.getCities(), request.isUseRealApi())
+                .collectList()
+                .map(ResponseEntity::ok);
     }
     
+    /**
+     * Server-Sent Events with a {@code weather} event every {@code weather.stream.interval}.
+     * All clients watching a city share one producer.
+     */
+    @GetMapping(path = "/stream/{city}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<WeatherResponse>> streamWeather(
+            @PathVariable String city,
+            @RequestParam(defaultValue = "false") boolean useRealApi) {
+        
+        return weatherStreamService.stream(city, useRealApi)
+                .map(response -> ServerSentEvent.builder(response).event("weather").build());
+    }
+    
+    /**
+     * Conditional: answers 304 without querying when the city has not changed since the
+     * client's {@code If-None-Match} or {@code If-Modified-Since}.
+     */
     @GetMapping("/history/{city}")
-    public ResponseEntity<List<WeatherData>> getWeatherHistory(@PathVariable String city) {
+    public ResponseEntity<List<?>> getWeatherHistory(
+            @PathVariable String city,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "raw") String resolution,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            ServletWebRequest webRequest) {
         try {
-            List<WeatherData> history = weatherService.getWeatherHistory(city);
-            return ResponseEntity.ok(history);
+            WeatherResolution granularity = WeatherResolution.parse(resolution);
+            WeatherVersions.Version version = weatherVersions.city(cityRegistry.find(city));
+            if (notModified(webRequest, version, version.modifiedMillis(), cursor, limit, granularity, accept)) {
+                return null;
+            }
+            if (granularity == WeatherResolution.HOURLY || granularity == WeatherResolution.DAILY) {
+                return toPageResponse(weatherService.getRollupHistory(city, granularity, cursor, limit));
+            }
+            return toPageResponse(weatherService.getWeatherHistory(city, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * Conditional like the history. Readings also leave the window as time passes, so the
+     * validators change at least once a minute even without writes.
+     */
     @GetMapping("/recent/{city}")
-    public ResponseEntity<List<WeatherData>> getRecentWeather(
+    public ResponseEntity<List<?>> getRecentWeather(
             @PathVariable String city,
-            @RequestParam(defaultValue = "24") int hours) {
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "auto") String resolution,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            ServletWebRequest webRequest) {
         try {
-            List<WeatherData> recent = weatherService.getRecentWeatherData(city, hours);
-            return ResponseEntity.ok(recent);
+            WeatherResolution granularity = WeatherResolution.parse(resolution);
+            if (granularity == WeatherResolution.AUTO) {
+                granularity = weatherService.resolutionFor(hours);
+            }
+            WeatherVersions.Version version = weatherVersions.city(cityRegistry.find(city));
+            long minute = System.currentTimeMillis() / 60_000;
+            if (notModified(webRequest, version, Math.max(version.modifiedMillis(), minute * 60_000),
+                    hours, minute, cursor, limit, granularity, accept)) {
+                return null;
+            }
+            if (granularity != WeatherResolution.RAW) {
+                return toPageResponse(weatherService.getRecentRollups(city, hours, granularity, cursor, limit));
+            }
+            return toPageResponse(weatherService.getRecentWeatherData(city, hours, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * Downloads readings taken in {@code [from, to)}, oldest first, as NDJSON or CSV, optionally
+     * gzipped. The export is written on the request thread, so it is not cut off by the async
+     * request timeout however many rows it has.
+     */
+    @GetMapping("/export")
+    public void exportWeather(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        WeatherExportService.Format exportFormat;
+        try {
+            exportFormat = WeatherExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        String fileName = "weather-export." + exportFormat.extension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : exportFormat.contentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            // Sync flush, so every chunk reaches the client instead of waiting in the deflater
+            GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192, true);
+            weatherExportService.export(exportFormat, city, from, to, gzipOut);
+            gzipOut.finish();
+        } else {
+            weatherExportService.export(exportFormat, city, from, to, out);
+        }
+    }
+    
+    /**
+     * Conditional: answers 304 when nothing was persisted since the client's copy.
+     */
     @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getWeatherStats() {
+    public ResponseEntity<Map<String, Object>> getWeatherStats(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            ServletWebRequest webRequest) {
         try {
+            WeatherVersions.Version version = weatherVersions.stats();
+            if (notModified(webRequest, version, version.modifiedMillis(), accept)) {
+                return null;
+            }
             Map<String, Object> stats = new HashMap<>();
             stats.put("mockRequests", weatherService.getRequestCountBySource("mock"));
             stats.put("apiRequests", weatherService.getRequestCountBySource("api"));
@@ -71,6 +225,28 @@ public class WeatherController {
         }
     }
     
+    /**
+     * Checks the request's validators against the version, before any query runs. On a match
+     * the response is already a 304 and the handler returns {@code null}; otherwise the ETag
+     * and {@code Last-Modified} headers are set for the full response. JSON and CBOR share the
+     * URL, so both carry {@code Vary: Accept} for caches.
+     */
+    private boolean notModified(ServletWebRequest webRequest, WeatherVersions.Version version, long lastModified,
+                                Object... variant) {
+        if (webRequest.getResponse() != null) {
+            webRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return webRequest.checkNotModified(weatherVersions.etag(version, variant), lastModified);
+    }
+    
+    private ResponseEntity<List<?>> toPageResponse(WeatherPage<?> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.<List<?>>body(page.items());
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> health() {
         Map<String, String> health = new HashMap<>();
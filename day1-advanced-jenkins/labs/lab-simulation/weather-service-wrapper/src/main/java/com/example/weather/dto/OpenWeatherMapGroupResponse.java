@@ -0,0 +1,13 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * OpenWeatherMap group payload ({@code GET /group?id=}): the current weather of several cities,
+ * one {@link OpenWeatherMapResponse} per city that was found.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenWeatherMapGroupResponse(List<OpenWeatherMapResponse> list) {
+}
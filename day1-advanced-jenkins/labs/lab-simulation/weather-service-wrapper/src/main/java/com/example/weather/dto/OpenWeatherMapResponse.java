@@ -0,0 +1,26 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Subset of the OpenWeatherMap current weather payload, decoded directly by Jackson.
+ * Fields the service does not use are skipped while parsing. {@code id} is OpenWeatherMap's
+ * own city id, which group lookups take.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OpenWeatherMapResponse(Long id, String name, Main main, List<Weather> weather, Wind wind) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Main(double temp, int humidity, double pressure) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Weather(String description) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Wind(Double speed) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class WeatherBatchRequest {
+    
+    @NotEmpty
+    @JsonProperty("cities")
+    private List<@NotBlank String> cities;
+    
+    @JsonProperty("useRealApi")
+    private boolean useRealApi;
+    
+    // Constructors
+    public WeatherBatchRequest() {
+    }
+    
+    public WeatherBatchRequest(List<String> cities, boolean useRealApi) {
+        this.cities = cities;
+        this.useRealApi = useRealApi;
+    }
+    
+    // Getters and Setters
+    public List<String> getCities() { return cities; }
+    public void setCities(List<String> cities) { this.cities = cities; }
+    
+    public boolean isUseRealApi() { return useRealApi; }
+    public void setUseRealApi(boolean useRealApi) { this.useRealApi = useRealApi; }
+}
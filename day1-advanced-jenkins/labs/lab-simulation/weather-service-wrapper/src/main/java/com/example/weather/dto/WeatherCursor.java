@@ -0,0 +1,47 @@
+package com.example.weather.dto;
+
+import com.example.weather.model.WeatherRollup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a city's readings, ordered by {@code (timestamp, id)} descending,
+ * or in its rollups, ordered by bucket start descending.
+ * Clients treat the encoded form as opaque.
+ */
+public record WeatherCursor(LocalDateTime timestamp, long id) {
+
+    /** Position before the newest possible reading, used for the first page. */
+    public static final WeatherCursor FIRST = new WeatherCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    public static WeatherCursor after(WeatherReading reading) {
+        return new WeatherCursor(reading.timestamp(), reading.id());
+    }
+
+    /** Rollup buckets are unique per city, so only the bucket start is significant. */
+    public static WeatherCursor after(WeatherRollup rollup) {
+        return new WeatherCursor(rollup.getBucketStart(), 0);
+    }
+
+    public static WeatherCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('_');
+            return new WeatherCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        String value = timestamp + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.weather.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One keyset page of readings or rollups; {@code nextCursor} is null on the last page.
+ */
+public record WeatherPage<T>(List<T> items, String nextCursor) {
+
+    public static <T> WeatherPage<T> empty() {
+        return new WeatherPage<>(List.of(), null);
+    }
+
+    public static WeatherPage<WeatherReading> of(List<WeatherReading> items, int limit) {
+        return of(items, limit, WeatherCursor::after);
+    }
+
+    public static <T> WeatherPage<T> of(List<T> items, int limit, Function<? super T, WeatherCursor> cursorAfter) {
+        String nextCursor = items.size() == limit
+                ? cursorAfter.apply(items.get(items.size() - 1)).encode()
+                : null;
+        return new WeatherPage<>(items, nextCursor);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored reading as returned by {@code /history} and {@code /recent}. Selected straight
+ * into this record by the repository, so pages skip entity hydration and dirty-checking
+ * snapshots. The row id is only kept for the page cursor.
+ */
+public record WeatherReading(@JsonIgnore long id,
+                             String cityName,
+                             double temperature,
+                             String description,
+                             int humidity,
+                             double pressure,
+                             double windSpeed,
+                             LocalDateTime timestamp,
+                             String source) {
+}
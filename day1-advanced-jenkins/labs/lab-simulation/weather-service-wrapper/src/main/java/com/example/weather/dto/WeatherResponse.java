@@ -32,6 +32,12 @@ public class WeatherResponse {
     @JsonProperty("status")
     private String status;
     
+    @JsonProperty("stale")
+    private boolean stale;
+    
+    @JsonProperty("age_seconds")
+    private Long ageSeconds;
+    
     // Constructors
     public WeatherResponse() {
         this.timestamp = LocalDateTime.now();
@@ -50,6 +56,14 @@ public class WeatherResponse {
         this.source = source;
     }
     
+    public static WeatherResponse error(String city, String description) {
+        WeatherResponse errorResponse = new WeatherResponse();
+        errorResponse.setCity(city);
+        errorResponse.setStatus("error");
+        errorResponse.setDescription(description);
+        return errorResponse;
+    }
+    
     // Getters and Setters
     public String getCity() { return city; }
     public void setCity(String city) { this.city = city; }
@@ -77,4 +91,10 @@ public class WeatherResponse {
     
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
+    
+    public boolean isStale() { return stale; }
+    public void setStale(boolean stale) { this.stale = stale; }
+    
+    public Long getAgeSeconds() { return ageSeconds; }
+    public void setAgeSeconds(Long ageSeconds) { this.ageSeconds = ageSeconds; }
 }
@@ -0,0 +1,55 @@
+package com.example.weather.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A canonical city. Every spelling of the city resolves to its {@code id}, which keys its
+ * readings, cache entries and counters; {@code name} is the spelling shown in responses.
+ */
+@Entity
+@Table(name = "city")
+public class City {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    // Trimmed, inner whitespace collapsed, lower case
+    @Column(name = "city_key", nullable = false, unique = true)
+    private String cityKey;
+
+    public City() {
+    }
+
+    public City(String name, String cityKey) {
+        this(null, name, cityKey);
+    }
+
+    public City(Integer id, String name, String cityKey) {
+        this.id = id;
+        this.name = name;
+        this.cityKey = cityKey;
+    }
+
+    public Integer getId() { return id; }
+    public String getName() { return name; }
+    public String getCityKey() { return cityKey; }
+
+    /**
+     * False for a city served while the registry was full: it has no id and is neither cached nor stored.
+     */
+    public boolean isRegistered() { return id != null; }
+
+    @Override
+    public String toString() {
+        return name + "#" + id;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.weather.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Number of raw readings per city and source removed by retention, so request
+ * statistics stay complete after the rows are deleted. Keyed by city id; the name is
+ * the city's canonical name.
+ */
+@Entity
+@Table(name = "weather_archived_count")
+@IdClass(WeatherArchivedCount.Key.class)
+public class WeatherArchivedCount {
+    
+    @Id
+    @Column(name = "city_id", nullable = false)
+    private Integer cityId;
+    
+    @Column(name = "city_name", nullable = false)
+    private String cityName;
+    
+    @Id
+    @Column(name = "source", nullable = false)
+    private String source;
+    
+    @Column(name = "request_count", nullable = false)
+    private long requestCount;
+    
+    public WeatherArchivedCount() {
+    }
+    
+    public WeatherArchivedCount(Integer cityId, String cityName, String source) {
+        this.cityId = cityId;
+        this.cityName = cityName;
+        this.source = source;
+    }
+    
+    public Integer getCityId() { return cityId; }
+    public String getCityName() { return cityName; }
+    public String getSource() { return source; }
+    
+    public long getRequestCount() { return requestCount; }
+    public void setRequestCount(long requestCount) { this.requestCount = requestCount; }
+    
+    public static class Key implements Serializable {
+        
+        private Integer cityId;
+        private String source;
+        
+        public Key() {
+        }
+        
+        public Key(Integer cityId, String source) {
+            this.cityId = cityId;
+            this.source = source;
+        }
+        
+        public Integer getCityId() { return cityId; }
+        public String getSource() { return source; }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && Objects.equals(cityId, other.cityId)
+                    && Objects.equals(source, other.source);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(cityId, source);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.weather.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -7,13 +8,21 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "weather_data")
+@Table(name = "weather_data", indexes = {
+    @Index(name = "idx_weather_data_city_timestamp", columnList = "city_id, timestamp, id"),
+    @Index(name = "idx_weather_data_timestamp_id", columnList = "timestamp, id")
+})
 public class WeatherData {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_data_seq")
+    @SequenceGenerator(name = "weather_data_seq", sequenceName = "weather_data_seq", allocationSize = 50)
     private Long id;
     
+    // Id of the canonical city; readings are looked up by it
+    @Column(name = "city_id", nullable = false)
+    private Integer cityId;
+    
     @NotBlank
     @Column(name = "city_name", nullable = false)
     private String cityName;
@@ -44,6 +53,16 @@ public class WeatherData {
     @Column(name = "source", nullable = false)
     private String source; // "mock" or "api"
     
+    // When the reading was taken upstream; copies of a cached reading keep the original time
+    @Transient
+    @JsonIgnore
+    private LocalDateTime observedAt;
+    
+    // Set when a last known good reading is served because the upstream failed
+    @Transient
+    @JsonIgnore
+    private boolean stale;
+    
     // Constructors
     public WeatherData() {
         this.timestamp = LocalDateTime.now();
@@ -61,10 +80,28 @@ public class WeatherData {
         this.source = source;
     }
     
+    public WeatherData(WeatherData other) {
+        this(other.cityName, other.temperature, other.description,
+                other.humidity, other.pressure, other.windSpeed, other.source);
+        this.cityId = other.cityId;
+        this.observedAt = other.getObservedAt();
+    }
+    
+    /**
+     * Files the reading under the canonical city, whatever spelling it was requested or returned with.
+     */
+    public void setCity(City city) {
+        this.cityId = city.getId();
+        this.cityName = city.getName();
+    }
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
+    public Integer getCityId() { return cityId; }
+    public void setCityId(Integer cityId) { this.cityId = cityId; }
+    
     public String getCityName() { return cityName; }
     public void setCityName(String cityName) { this.cityName = cityName; }
     
@@ -88,4 +125,11 @@ public class WeatherData {
     
     public String getSource() { return source; }
     public void setSource(String source) { this.source = source; }
+    
+    @JsonIgnore
+    public LocalDateTime getObservedAt() { return observedAt != null ? observedAt : timestamp; }
+    
+    @JsonIgnore
+    public boolean isStale() { return stale; }
+    public void setStale(boolean stale) { this.stale = stale; }
 }
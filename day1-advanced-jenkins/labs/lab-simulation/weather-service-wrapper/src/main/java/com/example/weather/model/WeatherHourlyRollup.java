@@ -0,0 +1,12 @@
+package com.example.weather.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "weather_rollup_hourly", indexes = {
+    @Index(name = "idx_weather_rollup_hourly_bucket", columnList = "bucket_start")
+})
+public class WeatherHourlyRollup extends WeatherRollup {
+}
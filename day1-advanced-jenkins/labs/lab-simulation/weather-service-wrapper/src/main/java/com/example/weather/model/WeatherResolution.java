@@ -0,0 +1,21 @@
+package com.example.weather.model;
+
+import java.util.Locale;
+
+/**
+ * Granularity of readings returned by {@code /history} and {@code /recent}.
+ */
+public enum WeatherResolution {
+    /** Individual readings, kept for {@code weather.retention.raw-window}. */
+    RAW,
+    /** Per-city hourly rollups, kept for {@code weather.retention.hourly-window}. */
+    HOURLY,
+    /** Per-city daily rollups, kept indefinitely. */
+    DAILY,
+    /** Pick the finest resolution that covers the requested range. */
+    AUTO;
+    
+    public static WeatherResolution parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.weather.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.MappedSuperclass;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Per-city aggregate of the readings in one time bucket. Sums are stored instead of
+ * averages so that buckets can be combined into coarser ones. Keyed by city id; the name
+ * is the city's canonical name.
+ */
+@MappedSuperclass
+@IdClass(WeatherRollup.Key.class)
+public abstract class WeatherRollup {
+    
+    @Id
+    @Column(name = "city_id", nullable = false)
+    private Integer cityId;
+    
+    @Column(name = "city_name", nullable = false)
+    private String cityName;
+    
+    @Id
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(name = "sample_count", nullable = false)
+    private long sampleCount;
+    
+    @Column(name = "min_temperature", nullable = false)
+    private double minTemperature;
+    
+    @Column(name = "max_temperature", nullable = false)
+    private double maxTemperature;
+    
+    @Column(name = "sum_temperature", nullable = false)
+    private double sumTemperature;
+    
+    @Column(name = "min_humidity", nullable = false)
+    private int minHumidity;
+    
+    @Column(name = "max_humidity", nullable = false)
+    private int maxHumidity;
+    
+    @Column(name = "sum_humidity", nullable = false)
+    private long sumHumidity;
+    
+    @JsonIgnore
+    public Integer getCityId() { return cityId; }
+    public void setCityId(Integer cityId) { this.cityId = cityId; }
+    
+    public String getCityName() { return cityName; }
+    public void setCityName(String cityName) { this.cityName = cityName; }
+    
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    
+    public long getSampleCount() { return sampleCount; }
+    public void setSampleCount(long sampleCount) { this.sampleCount = sampleCount; }
+    
+    public double getMinTemperature() { return minTemperature; }
+    public void setMinTemperature(double minTemperature) { this.minTemperature = minTemperature; }
+    
+    public double getMaxTemperature() { return maxTemperature; }
+    public void setMaxTemperature(double maxTemperature) { this.maxTemperature = maxTemperature; }
+    
+    @JsonIgnore
+    public double getSumTemperature() { return sumTemperature; }
+    public void setSumTemperature(double sumTemperature) { this.sumTemperature = sumTemperature; }
+    
+    public int getMinHumidity() { return minHumidity; }
+    public void setMinHumidity(int minHumidity) { this.minHumidity = minHumidity; }
+    
+    public int getMaxHumidity() { return maxHumidity; }
+    public void setMaxHumidity(int maxHumidity) { this.maxHumidity = maxHumidity; }
+    
+    @JsonIgnore
+    public long getSumHumidity() { return sumHumidity; }
+    public void setSumHumidity(long sumHumidity) { this.sumHumidity = sumHumidity; }
+    
+    /**
+     * Adds the samples of another bucket to this one.
+     */
+    public void include(WeatherRollup other) {
+        if (sampleCount == 0) {
+            minTemperature = other.minTemperature;
+            maxTemperature = other.maxTemperature;
+            minHumidity = other.minHumidity;
+            maxHumidity = other.maxHumidity;
+        } else {
+            minTemperature = Math.min(minTemperature, other.minTemperature);
+            maxTemperature = Math.max(maxTemperature, other.maxTemperature);
+            minHumidity = Math.min(minHumidity, other.minHumidity);
+            maxHumidity = Math.max(maxHumidity, other.maxHumidity);
+        }
+        sampleCount += other.sampleCount;
+        sumTemperature += other.sumTemperature;
+        sumHumidity += other.sumHumidity;
+    }
+    
+    public double getAvgTemperature() {
+        return sampleCount > 0 ? Math.round(sumTemperature / sampleCount * 10.0) / 10.0 : 0.0;
+    }
+    
+    public double getAvgHumidity() {
+        return sampleCount > 0 ? Math.round((double) sumHumidity / sampleCount * 10.0) / 10.0 : 0.0;
+    }
+    
+    public static class Key implements Serializable {
+        
+        private Integer cityId;
+        private LocalDateTime bucketStart;
+        
+        public Key() {
+        }
+        
+        public Key(Integer cityId, LocalDateTime bucketStart) {
+            this.cityId = cityId;
+            this.bucketStart = bucketStart;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && Objects.equals(cityId, other.cityId)
+                    && Objects.equals(bucketStart, other.bucketStart);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(cityId, bucketStart);
+        }
+    }
+}
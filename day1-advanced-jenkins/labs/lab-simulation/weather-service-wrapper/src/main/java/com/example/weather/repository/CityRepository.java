@@ -0,0 +1,19 @@
+package com.example.weather.repository;
+
+import com.example.weather.model.City;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CityRepository extends JpaRepository<City, Integer> {
+
+    Optional<City> findByCityKey(String cityKey);
+
+    // Aliases are maintained by migrations only, so they have no entity
+    @Query(nativeQuery = true, value = "SELECT alias_key, city_id FROM city_alias")
+    List<Object[]> findAliases();
+}
@@ -0,0 +1,15 @@
+package com.example.weather.repository;
+
+import com.example.weather.model.WeatherArchivedCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WeatherArchivedCountRepository extends JpaRepository<WeatherArchivedCount, WeatherArchivedCount.Key> {
+    
+    @Query("SELECT a.source, a.cityId, a.requestCount FROM WeatherArchivedCount a")
+    List<Object[]> findSourceAndCityCounts();
+}
@@ -1,7 +1,10 @@
 package com.example.weather.repository;
 
+import com.example.weather.dto.WeatherReading;
 import com.example.weather.model.WeatherData;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,16 +16,67 @@ import java.util.Optional;
 @Repository
 public interface WeatherDataRepository extends JpaRepository<WeatherData, Long> {
     
-    Optional<WeatherData> findFirstByCityNameOrderByTimestampDesc(String cityName);
+    Optional<WeatherData> findFirstByCityIdAndSourceOrderByTimestampDesc(Integer cityId, String source);
     
-    List<WeatherData> findByCityNameOrderByTimestampDesc(String cityName);
+    @Query("SELECT new com.example.weather.dto.WeatherReading(w.id, w.cityName, w.temperature, w.description, " +
+           "w.humidity, w.pressure, w.windSpeed, w.timestamp, w.source) FROM WeatherData w WHERE w.cityId = :cityId " +
+           "AND (w.timestamp < :beforeTimestamp OR (w.timestamp = :beforeTimestamp AND w.id < :beforeId)) " +
+           "ORDER BY w.timestamp DESC, w.id DESC")
+    List<WeatherReading> findHistoryPage(@Param("cityId") Integer cityId,
+                                         @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                         @Param("beforeId") long beforeId,
+                                         Limit limit);
     
-    @Query("SELECT w FROM WeatherData w WHERE w.cityName = :cityName AND w.timestamp >= :since ORDER BY w.timestamp DESC")
-    List<WeatherData> findByCityNameAndTimestampAfter(@Param("cityName") String cityName, @Param("since") LocalDateTime since);
+    @Query("SELECT new com.example.weather.dto.WeatherReading(w.id, w.cityName, w.temperature, w.description, " +
+           "w.humidity, w.pressure, w.windSpeed, w.timestamp, w.source) FROM WeatherData w WHERE w.cityId = :cityId " +
+           "AND w.timestamp >= :since " +
+           "AND (w.timestamp < :beforeTimestamp OR (w.timestamp = :beforeTimestamp AND w.id < :beforeId)) " +
+           "ORDER BY w.timestamp DESC, w.id DESC")
+    List<WeatherReading> findRecentPage(@Param("cityId") Integer cityId,
+                                        @Param("since") LocalDateTime since,
+                                        @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                        @Param("beforeId") long beforeId,
+                                        Limit limit);
     
-    @Query("SELECT COUNT(w) FROM WeatherData w WHERE w.source = :source")
-    Long countBySource(@Param("source") String source);
+    /**
+     * Request counts per source and city, read in one statement so both come from the same snapshot.
+     */
+    @Query("SELECT w.source, w.cityId, COUNT(w) FROM WeatherData w GROUP BY w.source, w.cityId")
+    List<Object[]> findSourceAndCityCounts();
     
-    @Query("SELECT w.cityName, COUNT(w) FROM WeatherData w GROUP BY w.cityName ORDER BY COUNT(w) DESC")
-    List<Object[]> findCityRequestCounts();
+    @Query("SELECT MIN(w.timestamp) FROM WeatherData w WHERE w.timestamp >= :since")
+    LocalDateTime findEarliestTimestampSince(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT w FROM WeatherData w WHERE w.source = 'api' AND w.timestamp >= :since " +
+           "AND w.timestamp = (SELECT MAX(l.timestamp) FROM WeatherData l " +
+           "WHERE l.cityId = w.cityId AND l.source = 'api') " +
+           "ORDER BY w.timestamp DESC")
+    List<WeatherData> findLatestApiReadingsSince(@Param("since") LocalDateTime since, Limit limit);
+    
+    /**
+     * Hourly totals of a city's readings since {@code from}, for hours not rolled up yet: bucket start,
+     * sample count, min, max and sum of temperature, then min, max and sum of humidity.
+     */
+    @Query(nativeQuery = true, value =
+           "SELECT DATE_TRUNC('HOUR', timestamp), COUNT(*), MIN(temperature), MAX(temperature), SUM(temperature), " +
+           "MIN(humidity), MAX(humidity), SUM(humidity) FROM weather_data " +
+           "WHERE city_id = :cityId AND timestamp >= :from GROUP BY DATE_TRUNC('HOUR', timestamp)")
+    List<Object[]> findHourlyTotalsSince(@Param("cityId") Integer cityId, @Param("from") LocalDateTime from);
+    
+    /**
+     * Marks the readings in the range that no rollup has claimed yet with the given run id.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+           "UPDATE weather_data SET rollup_run = :run " +
+           "WHERE rollup_run IS NULL AND timestamp >= :from AND timestamp < :to")
+    int claimForRollup(@Param("run") long run, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    /**
+     * Expired readings that are already rolled up; an unclaimed late reading is kept until it is.
+     */
+    @Query(nativeQuery = true, value =
+           "SELECT id, city_id, city_name, source FROM weather_data " +
+           "WHERE timestamp < :cutoff AND rollup_run IS NOT NULL ORDER BY timestamp, id LIMIT :limit")
+    List<Object[]> findExpired(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
 }
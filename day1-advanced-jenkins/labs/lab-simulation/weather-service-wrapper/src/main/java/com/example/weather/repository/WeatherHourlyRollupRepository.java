@@ -0,0 +1,36 @@
+package com.example.weather.repository;
+
+import com.example.weather.model.WeatherHourlyRollup;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WeatherHourlyRollupRepository extends WeatherRollupRepository<WeatherHourlyRollup> {
+    
+    /**
+     * Adds the readings claimed by the run to their hourly buckets, creating missing buckets.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+           "MERGE INTO weather_rollup_hourly r USING (" +
+           "SELECT city_id, MAX(city_name) AS city_name, DATE_TRUNC('HOUR', timestamp) AS bucket_start, " +
+           "COUNT(*) AS sample_count, MIN(temperature) AS min_temperature, MAX(temperature) AS max_temperature, " +
+           "SUM(temperature) AS sum_temperature, MIN(humidity) AS min_humidity, MAX(humidity) AS max_humidity, " +
+           "SUM(humidity) AS sum_humidity FROM weather_data WHERE rollup_run = :run " +
+           "GROUP BY city_id, DATE_TRUNC('HOUR', timestamp)) s " +
+           "ON r.city_id = s.city_id AND r.bucket_start = s.bucket_start " +
+           "WHEN MATCHED THEN UPDATE SET sample_count = r.sample_count + s.sample_count, " +
+           "min_temperature = LEAST(r.min_temperature, s.min_temperature), " +
+           "max_temperature = GREATEST(r.max_temperature, s.max_temperature), " +
+           "sum_temperature = r.sum_temperature + s.sum_temperature, " +
+           "min_humidity = LEAST(r.min_humidity, s.min_humidity), " +
+           "max_humidity = GREATEST(r.max_humidity, s.max_humidity), " +
+           "sum_humidity = r.sum_humidity + s.sum_humidity " +
+           "WHEN NOT MATCHED THEN INSERT (city_id, city_name, bucket_start, sample_count, " +
+           "min_temperature, max_temperature, sum_temperature, min_humidity, max_humidity, sum_humidity) " +
+           "VALUES (s.city_id, s.city_name, s.bucket_start, s.sample_count, " +
+           "s.min_temperature, s.max_temperature, s.sum_temperature, s.min_humidity, s.max_humidity, s.sum_humidity)")
+    int rollUpClaimed(@Param("run") long run);
+}
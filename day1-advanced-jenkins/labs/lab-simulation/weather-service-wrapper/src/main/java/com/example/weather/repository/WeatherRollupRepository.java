@@ -0,0 +1,34 @@
+package com.example.weather.repository;
+
+import com.example.weather.model.WeatherRollup;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@NoRepositoryBean
+public interface WeatherRollupRepository<T extends WeatherRollup> extends JpaRepository<T, WeatherRollup.Key> {
+    
+    @Query("SELECT r FROM #{#entityName} r WHERE r.cityId = :cityId " +
+           "AND r.bucketStart >= :since AND r.bucketStart < :beforeBucket " +
+           "ORDER BY r.bucketStart DESC")
+    List<T> findPage(@Param("cityId") int cityId,
+                     @Param("since") LocalDateTime since,
+                     @Param("beforeBucket") LocalDateTime beforeBucket,
+                     Limit limit);
+    
+    @Query("SELECT MIN(r.bucketStart) FROM #{#entityName} r")
+    LocalDateTime findEarliestBucket();
+    
+    @Query("SELECT MAX(r.bucketStart) FROM #{#entityName} r")
+    LocalDateTime findLatestBucket();
+    
+    @Modifying
+    @Query("DELETE FROM #{#entityName} r WHERE r.bucketStart < :before")
+    int deleteBucketsBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,86 @@
+package com.example.weather.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global limit on requests in flight, adapted to observed latency (AIMD). A request slower
+ * than {@code weather.admission.concurrency.latency-threshold} shrinks the limit by
+ * {@code backoff-ratio}; a fast one grows it by one while at least half of it is in use. Once the
+ * service is saturated the limit settles where latency stays under the threshold, and excess
+ * requests are rejected at once instead of queueing behind slow ones.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** The limit as {@code double} bits, so it can shrink by a ratio without a lock. */
+    private final AtomicLong limitBits;
+
+    public AdaptiveConcurrencyLimiter(@Value("${weather.admission.concurrency.initial-limit:100}") int initialLimit,
+                                      @Value("${weather.admission.concurrency.min-limit:10}") int minLimit,
+                                      @Value("${weather.admission.concurrency.max-limit:500}") int maxLimit,
+                                      @Value("${weather.admission.concurrency.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${weather.admission.concurrency.latency-threshold:500ms}") Duration latencyThreshold) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    /**
+     * Takes a slot if fewer than {@link #limit()} requests are in flight. Every successful call
+     * must be followed by exactly one {@link #release(long)}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a request that took {@code latencyNanos} and adjusts the limit.
+     */
+    public void release(long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+            if (latencyNanos > latencyThresholdNanos) {
+                next = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlightBefore * 2 >= limit) {
+                next = Math.min(maxLimit, limit + 1);
+            } else {
+                // Not enough load to tell whether a higher limit would still be fast
+                return;
+            }
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing hash table from normalized city keys to cities, looked up by the spelling
+ * as typed. The spelling is normalized while it is hashed and compared (trimmed, inner
+ * whitespace collapsed to one space, lower case), so a lookup allocates nothing. Readers never
+ * lock; writers must be serialized by the caller. Entries are never removed.
+ */
+final class CityIndex {
+
+    private record Entry(String key, int hash, City city) {
+    }
+
+    private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(64);
+    private int size;
+
+    City get(CharSequence spelling) {
+        AtomicReferenceArray<Entry> entries = table;
+        int mask = entries.length() - 1;
+        int hash = hash(spelling);
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            Entry entry = entries.get(i);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && matches(spelling, entry.key)) {
+                return entry.city;
+            }
+        }
+    }
+
+    /**
+     * Maps a key, already normalized with {@link #normalize}, to the city; replaces an existing mapping.
+     */
+    void put(String key, City city) {
+        if ((size + 1) * 2 > table.length()) {
+            AtomicReferenceArray<Entry> resized = new AtomicReferenceArray<>(table.length() * 2);
+            for (int i = 0; i < table.length(); i++) {
+                Entry entry = table.get(i);
+                if (entry != null) {
+                    insert(resized, entry);
+                }
+            }
+            table = resized;
+        }
+        if (insert(table, new Entry(key, key.hashCode(), city))) {
+            size++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the key was new.
+     */
+    private static boolean insert(AtomicReferenceArray<Entry> entries, Entry added) {
+        int mask = entries.length() - 1;
+        for (int i = spread(added.hash) & mask; ; i = (i + 1) & mask) {
+            Entry entry = entries.get(i);
+            if (entry == null || entry.key.equals(added.key)) {
+                // Volatile store: a reader sees either no entry or a complete one
+                entries.set(i, added);
+                return entry == null;
+            }
+        }
+    }
+
+    /**
+     * The normalized key of a spelling; {@code lowerCase = false} keeps the case, for display names.
+     */
+    static String normalize(CharSequence spelling, boolean lowerCase) {
+        StringBuilder key = new StringBuilder(spelling.length());
+        int end = trimmedEnd(spelling);
+        boolean space = false;
+        for (int i = trimmedStart(spelling, end); i < end; i++) {
+            char c = spelling.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                key.append(' ');
+                space = false;
+            }
+            key.append(lowerCase ? Character.toLowerCase(c) : c);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Same as {@code normalize(spelling, true).hashCode()}.
+     */
+    static int hash(CharSequence spelling) {
+        int hash = 0;
+        int end = trimmedEnd(spelling);
+        boolean space = false;
+        for (int i = trimmedStart(spelling, end); i < end; i++) {
+            char c = spelling.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                hash = 31 * hash + ' ';
+                space = false;
+            }
+            hash = 31 * hash + Character.toLowerCase(c);
+        }
+        return hash;
+    }
+
+    /**
+     * Same as {@code normalize(spelling, true).equals(key)}.
+     */
+    static boolean matches(CharSequence spelling, String key) {
+        int k = 0;
+        int length = key.length();
+        int end = trimmedEnd(spelling);
+        boolean space = false;
+        for (int i = trimmedStart(spelling, end); i < end; i++) {
+            char c = spelling.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                if (k == length || key.charAt(k++) != ' ') {
+                    return false;
+                }
+                space = false;
+            }
+            if (k == length || key.charAt(k++) != Character.toLowerCase(c)) {
+                return false;
+            }
+        }
+        return k == length;
+    }
+
+    private static int trimmedEnd(CharSequence spelling) {
+        int end = spelling.length();
+        while (end > 0 && Character.isWhitespace(spelling.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimmedStart(CharSequence spelling, int end) {
+        int start = 0;
+        while (start < end && Character.isWhitespace(spelling.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
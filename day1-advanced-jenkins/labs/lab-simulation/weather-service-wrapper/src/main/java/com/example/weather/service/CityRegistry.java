@@ -0,0 +1,152 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.repository.CityRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resolves city spellings to canonical {@link City cities}. "Bucharest", " bucharest " and
+ * "BUCHAREST" share a normalized key, and aliases such as "Bucuresti" (table {@code city_alias})
+ * point at the same city, so they all share one id: one series of readings, one cache entry
+ * and one counter. All cities are held in memory and known spellings resolve without touching
+ * the database or allocating; a city seen for the first time is stored under the spelling it
+ * first arrived with. Read paths only {@link #find} cities, and at most
+ * {@code weather.cities.max-registered} are registered, so arbitrary names cannot grow the
+ * table without bound; once it is full, new cities are still served, unregistered.
+ */
+@Component
+public class CityRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(CityRegistry.class);
+
+    private final CityRepository cityRepository;
+    private final int maxCities;
+    private final CityIndex index = new CityIndex();
+    private final ReentrantLock registerLock = new ReentrantLock();
+    private volatile AtomicReferenceArray<City> byId = new AtomicReferenceArray<>(64);
+    // Guarded by registerLock
+    private int registered;
+    private boolean fullLogged;
+
+    public CityRegistry(CityRepository cityRepository,
+                        @Value("${weather.cities.max-registered:10000}") int maxCities) {
+        this.cityRepository = cityRepository;
+        this.maxCities = maxCities;
+    }
+
+    @PostConstruct
+    public void load() {
+        registerLock.lock();
+        try {
+            cityRepository.findAll().forEach(this::add);
+            int aliases = 0;
+            for (Object[] alias : cityRepository.findAliases()) {
+                City city = get(((Number) alias[1]).intValue());
+                if (city != null) {
+                    index.put(CityIndex.normalize((String) alias[0], true), city);
+                    aliases++;
+                }
+            }
+            log.info("City registry loaded {} spellings ({} aliases)", index.size(), aliases);
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    /**
+     * The city a spelling resolves to, or {@code null} when it is not registered.
+     */
+    public City find(CharSequence spelling) {
+        return index.get(spelling);
+    }
+
+    /**
+     * The city a spelling resolves to, registering it when it is new. Blocks on an insert the
+     * first time a city is seen. When the registry is full, a new city comes back
+     * {@link City#isRegistered() unregistered} instead.
+     *
+     * @throws IllegalArgumentException if the spelling is blank
+     */
+    public City resolve(String spelling) {
+        City city = index.get(spelling);
+        if (city != null) {
+            return city;
+        }
+        registerLock.lock();
+        try {
+            city = index.get(spelling);
+            if (city == null) {
+                city = register(spelling);
+            }
+            return city;
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    /**
+     * The city with the id, or {@code null} when there is none.
+     */
+    public City get(int id) {
+        AtomicReferenceArray<City> cities = byId;
+        return id >= 0 && id < cities.length() ? cities.get(id) : null;
+    }
+
+    /**
+     * A key that is equal for every spelling of a city: the registered city's key, or the
+     * normalized spelling for a city that is not registered yet.
+     */
+    public String keyOf(String spelling) {
+        City city = index.get(spelling);
+        return city != null ? city.getCityKey() : CityIndex.normalize(spelling, true);
+    }
+
+    private City register(String spelling) {
+        String key = CityIndex.normalize(spelling, true);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("City name is blank");
+        }
+        if (registered >= maxCities) {
+            if (!fullLogged) {
+                fullLogged = true;
+                log.warn("City registry is full ({} cities); new cities are served without being cached or stored",
+                        maxCities);
+            }
+            return new City(null, CityIndex.normalize(spelling, false), key);
+        }
+        City city;
+        try {
+            city = cityRepository.save(new City(CityIndex.normalize(spelling, false), key));
+        } catch (DataIntegrityViolationException e) {
+            // Registered by another instance in the meantime
+            city = cityRepository.findByCityKey(key).orElseThrow(() -> e);
+        }
+        add(city);
+        log.debug("Registered city {}", city);
+        return city;
+    }
+
+    private void add(City city) {
+        AtomicReferenceArray<City> cities = byId;
+        if (city.getId() >= cities.length()) {
+            AtomicReferenceArray<City> grown = new AtomicReferenceArray<>(Math.max(city.getId() + 1, cities.length() * 2));
+            for (int i = 0; i < cities.length(); i++) {
+                grown.set(i, cities.get(i));
+            }
+            cities = grown;
+        }
+        if (cities.getAndSet(city.getId(), city) == null) {
+            registered++;
+        }
+        byId = cities;
+        index.put(city.getCityKey(), city);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.weather.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client token buckets, implemented as the generic cell rate algorithm: each client is a
+ * single {@link AtomicLong} holding the time at which its bucket will be full again, updated
+ * with one CAS per request, so concurrent requests never lock. A client gets
+ * {@code weather.admission.rate-limit.rate} tokens per second with bursts of up to
+ * {@code weather.admission.rate-limit.burst}. A request costing more than the burst is admitted
+ * only from a full bucket and leaves the client in debt until the excess has refilled. A client
+ * is evicted once its bucket has been full for a whole refill, never while it is in debt, and
+ * at most {@code weather.admission.rate-limit.max-clients} are tracked.
+ */
+@Component
+public class ClientRateLimiter {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+    private final Policy.VarExpiration<String, AtomicLong> bucketExpiration;
+
+    @Autowired
+    public ClientRateLimiter(@Value("${weather.admission.rate-limit.rate:20}") double rate,
+                             @Value("${weather.admission.rate-limit.burst:40}") int burst,
+                             @Value("${weather.admission.rate-limit.max-clients:100000}") long maxClients) {
+        this(rate, burst, maxClients, System::nanoTime);
+    }
+
+    ClientRateLimiter(double rate, int burst, long maxClients, LongSupplier nanoClock) {
+        this.nanosPerToken = (long) (1_000_000_000L / rate);
+        this.burstNanos = nanosPerToken * burst;
+        this.nanoClock = nanoClock;
+        // A bucket that has been full for one more refill is dropped; a new one starts full as well
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .ticker(nanoClock::getAsLong)
+                .expireAfter(new Expiry<String, AtomicLong>() {
+                    @Override
+                    public long expireAfterCreate(String clientId, AtomicLong fullAt, long currentTime) {
+                        return untilIdle(fullAt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clientId, AtomicLong fullAt, long currentTime,
+                                                  long currentDuration) {
+                        return untilIdle(fullAt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clientId, AtomicLong fullAt, long currentTime,
+                                                long currentDuration) {
+                        return untilIdle(fullAt, currentTime);
+                    }
+                })
+                .build();
+        this.bucketExpiration = buckets.policy().expireVariably().orElseThrow();
+    }
+
+    /**
+     * Takes {@code tokens} from the client's bucket.
+     *
+     * @return 0 when admitted, otherwise how long until enough tokens are available, in nanoseconds
+     */
+    public long tryAcquire(String clientId, int tokens) {
+        AtomicLong fullAt = buckets.get(clientId, id -> new AtomicLong(Long.MIN_VALUE));
+        long cost = nanosPerToken * tokens;
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = fullAt.get();
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + cost;
+            long overdraft = next - now - Math.max(burstNanos, cost);
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                if (cost > burstNanos) {
+                    // Deeper in debt than the read above allowed for: keep the bucket until it refills
+                    bucketExpiration.setExpiresAfter(clientId, Duration.ofNanos(next - now + burstNanos));
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds until the bucket is full, plus one more refill.
+     */
+    private long untilIdle(AtomicLong fullAt, long now) {
+        long current = fullAt.get();
+        return (current == Long.MIN_VALUE ? 0 : Math.max(current - now, 0)) + burstNanos;
+    }
+
+    long trackedClients() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.weather.service;
+
+import com.example.weather.config.CacheConfig;
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherDataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the most requested cities warm. Requests are counted per city; every
+ * {@code weather.refresh.interval} the top {@code weather.refresh.hot-cities} are fetched
+ * from OpenWeatherMap and written to the weather cache before their entries expire.
+ * Also holds the last known good reading per city, served while the upstream is failing.
+ * Both are restored from the database at startup.
+ */
+@Component
+public class HotCityRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(HotCityRefresher.class);
+
+    private final OpenWeatherMapService openWeatherMapService;
+    private final CityRegistry cityRegistry;
+    private final WeatherDataRepository weatherDataRepository;
+    private final Scheduler persistenceScheduler;
+    private final CacheManager cacheManager;
+    private final int hotCities;
+    private final int maxTracked;
+    private final int concurrency;
+    private final Duration maxStale;
+    private final boolean warmUpEnabled;
+    private final Duration warmUpMaxAge;
+    private final Map<Integer, TrackedCity> trackedCities = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public HotCityRefresher(OpenWeatherMapService openWeatherMapService,
+                            CityRegistry cityRegistry,
+                            WeatherDataRepository weatherDataRepository,
+                            Scheduler persistenceScheduler,
+                            CacheManager cacheManager,
+                            @Value("${weather.refresh.hot-cities:20}") int hotCities,
+                            @Value("${weather.refresh.max-tracked:1000}") int maxTracked,
+                            @Value("${weather.refresh.concurrency:4}") int concurrency,
+                            @Value("${weather.refresh.max-stale:30m}") Duration maxStale,
+                            @Value("${weather.cache.warm-up.enabled:true}") boolean warmUpEnabled,
+                            @Value("${weather.cache.warm-up.max-age:5m}") Duration warmUpMaxAge) {
+        this.openWeatherMapService = openWeatherMapService;
+        this.cityRegistry = cityRegistry;
+        this.weatherDataRepository = weatherDataRepository;
+        this.persistenceScheduler = persistenceScheduler;
+        this.cacheManager = cacheManager;
+        this.hotCities = hotCities;
+        this.maxTracked = maxTracked;
+        this.concurrency = concurrency;
+        this.maxStale = maxStale;
+        this.warmUpEnabled = warmUpEnabled;
+        this.warmUpMaxAge = warmUpMaxAge;
+    }
+
+    /**
+     * Restores the newest upstream reading of each recently requested city as its last known
+     * good one, and puts those younger than {@code weather.cache.warm-up.max-age} into the cache,
+     * so the first requests after a restart do not all go to OpenWeatherMap. Restored cities
+     * are refreshed in the first background cycle.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUpEnabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cacheableSince = now.minus(warmUpMaxAge);
+        Cache cache = cacheManager.getCache(CacheConfig.WEATHER_CACHE);
+        List<WeatherData> readings = weatherDataRepository.findLatestApiReadingsSince(
+                now.minus(maxStale), Limit.of(maxTracked));
+        int cached = 0;
+        for (WeatherData reading : readings) {
+            City city = cityRegistry.get(reading.getCityId());
+            if (city == null) {
+                continue;
+            }
+            TrackedCity tracked = trackedCities.computeIfAbsent(city.getId(), id -> new TrackedCity(city));
+            tracked.lastGood = reading;
+            tracked.hits.increment();
+            if (cache != null && reading.getObservedAt().isAfter(cacheableSince)) {
+                cache.put(city.getId(), reading);
+                cached++;
+            }
+        }
+        log.info("Cache warm-up restored {} cities ({} cached) in {} ms",
+                readings.size(), cached, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    public void recordHit(City city) {
+        TrackedCity tracked = trackedCities.get(city.getId());
+        if (tracked == null) {
+            if (trackedCities.size() >= maxTracked) {
+                return;
+            }
+            tracked = trackedCities.computeIfAbsent(city.getId(), id -> new TrackedCity(city));
+        }
+        tracked.hits.increment();
+    }
+
+    /**
+     * Stores a successful upstream reading as the last known good one for the city.
+     */
+    public void remember(City city, WeatherData weatherData) {
+        TrackedCity tracked = trackedCities.get(city.getId());
+        if (tracked != null) {
+            tracked.lastGood = weatherData;
+        }
+    }
+
+    /**
+     * The latest upstream reading for the city that is at most {@code weather.refresh.max-stale}
+     * old, from memory or else from the database; empty when there is none.
+     */
+    public Mono<WeatherData> lastKnownGood(City city) {
+        TrackedCity tracked = trackedCities.get(city.getId());
+        WeatherData lastGood = tracked != null ? tracked.lastGood : null;
+        if (lastGood != null) {
+            return isRecent(lastGood) ? Mono.just(lastGood) : Mono.empty();
+        }
+        // Newer mock readings must not hide the latest upstream one, so only api rows are queried
+        return Mono.fromCallable(() -> weatherDataRepository.findFirstByCityIdAndSourceOrderByTimestampDesc(city.getId(), "api")
+                        .filter(this::isRecent)
+                        .orElse(null))
+                .subscribeOn(persistenceScheduler);
+    }
+
+    @Scheduled(fixedDelayString = "${weather.refresh.interval:240000}",
+            initialDelayString = "${weather.refresh.interval:240000}")
+    public void refreshHotCities() {
+        if (!refreshing.compareAndSet(false, true)) {
+            log.debug("Previous hot city refresh still running, skipping");
+            return;
+        }
+        List<TrackedCity> hot = selectHotCities();
+        if (hot.isEmpty()) {
+            refreshing.set(false);
+            return;
+        }
+        Cache cache = cacheManager.getCache(CacheConfig.WEATHER_CACHE);
+        Flux.fromIterable(hot)
+                .flatMap(tracked -> openWeatherMapService.getWeatherData(tracked.city)
+                        .doOnNext(weatherData -> {
+                            tracked.lastGood = weatherData;
+                            if (cache != null) {
+                                cache.put(tracked.city.getId(), weatherData);
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            log.debug("Refresh of {} failed: {}", tracked.city.getName(), e.toString());
+                            return Mono.empty();
+                        }), concurrency)
+                .count()
+                .doFinally(signal -> refreshing.set(false))
+                .subscribe(refreshed -> log.debug("Refreshed {} of {} hot cities", refreshed, hot.size()));
+    }
+
+    /**
+     * Picks the cities with the most requests since the last cycle and resets their counts.
+     * Cities without requests and without a recent reading stop being tracked.
+     */
+    private List<TrackedCity> selectHotCities() {
+        trackedCities.values().forEach(city -> city.recentHits = city.hits.sumThenReset());
+        trackedCities.values().removeIf(city -> city.recentHits == 0
+                && (city.lastGood == null || !isRecent(city.lastGood)));
+        return trackedCities.values().stream()
+                .filter(city -> city.recentHits > 0)
+                .sorted(Comparator.comparingLong((TrackedCity city) -> city.recentHits).reversed())
+                .limit(hotCities)
+                .toList();
+    }
+
+    private boolean isRecent(WeatherData weatherData) {
+        return weatherData.getObservedAt().isAfter(LocalDateTime.now().minus(maxStale));
+    }
+
+    private static final class TrackedCity {
+        private final City city;
+        private final LongAdder hits = new LongAdder();
+        private volatile WeatherData lastGood;
+        private long recentHits;
+
+        private TrackedCity(City city) {
+            this.city = city;
+        }
+    }
+}
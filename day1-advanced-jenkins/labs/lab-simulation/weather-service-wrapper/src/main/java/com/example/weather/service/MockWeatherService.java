@@ -1,88 +1,112 @@
 package com.example.weather.service;
 
 import com.example.weather.model.WeatherData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.NavigableMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
 
 @Service
 public class MockWeatherService {
-    
-    private final Random random = new Random();
-    private final Map<String, WeatherData> mockData = new HashMap<>();
-    
+
+    private static final int MAX_SEEDED_CITIES = 10_000;
+
+    private static final String[] DESCRIPTIONS = {"Sunny", "Partly cloudy", "Cloudy", "Rainy", "Clear", "Overcast"};
+
+    // Case-insensitive lookup, so request city names are matched without lower-casing them
+    private static final NavigableMap<String, CityWeather> MOCK_DATA = initializeMockData();
+
+    private final Long seed;
+    // Readings generated so far per city, in seeded mode
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final AtomicLong overflowSequence = new AtomicLong();
+
     public MockWeatherService() {
-        initializeMockData();
+        this(null);
+    }
+
+    /**
+     * @param seed when set, the n-th reading of a city is derived from this value, the city
+     *             and n alone, so load tests are reproducible whichever threads serve them.
+     *             Cities beyond the first {@value #MAX_SEEDED_CITIES} share one sequence.
+     */
+    @Autowired
+    public MockWeatherService(@Value("${weather.mock.seed:#{null}}") Long seed) {
+        this.seed = seed;
     }
-    
-    private void initializeMockData() {
+
+    private static NavigableMap<String, CityWeather> initializeMockData() {
+        NavigableMap<String, CityWeather> mockData = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
         // Bucharest weather data
-        mockData.put("bucharest", new WeatherData(
-            "Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock"
-        ));
-        
+        mockData.put("bucharest", new CityWeather("Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5));
+
         // London weather data
-        mockData.put("london", new WeatherData(
-            "London", 15.2, "Rainy", 80, 1008.75, 18.3, "mock"
-        ));
-        
+        mockData.put("london", new CityWeather("London", 15.2, "Rainy", 80, 1008.75, 18.3));
+
         // Paris weather data
-        mockData.put("paris", new WeatherData(
-            "Paris", 18.7, "Sunny", 55, 1015.50, 8.9, "mock"
-        ));
-        
+        mockData.put("paris", new CityWeather("Paris", 18.7, "Sunny", 55, 1015.50, 8.9));
+
         // New York weather data
-        mockData.put("new york", new WeatherData(
-            "New York", 12.3, "Cloudy", 70, 1010.25, 15.7, "mock"
-        ));
-        
+        mockData.put("new york", new CityWeather("New York", 12.3, "Cloudy", 70, 1010.25, 15.7));
+
         // Tokyo weather data
-        mockData.put("tokyo", new WeatherData(
-            "Tokyo", 25.8, "Clear", 60, 1018.75, 6.2, "mock"
-        ));
+        mockData.put("tokyo", new CityWeather("Tokyo", 25.8, "Clear", 60, 1018.75, 6.2));
+
+        return Collections.unmodifiableNavigableMap(mockData);
     }
-    
+
     public WeatherData getMockWeatherData(String cityName) {
-        String normalizedCity = cityName.toLowerCase().trim();
-        
-        if (mockData.containsKey(normalizedCity)) {
-            WeatherData baseData = mockData.get(normalizedCity);
+        // trim() returns the same instance when there is nothing to strip
+        CityWeather baseData = MOCK_DATA.get(cityName.trim());
+
+        if (baseData != null) {
             return createVariedWeatherData(baseData);
         }
-        
+
         // Generate random weather data for unknown cities
         return generateRandomWeatherData(cityName);
     }
-    
-    private WeatherData createVariedWeatherData(WeatherData baseData) {
+
+    private WeatherData createVariedWeatherData(CityWeather baseData) {
+        RandomGenerator random = random(baseData.cityName());
+
         // Add some variation to make it more realistic
         double tempVariation = (random.nextDouble() - 0.5) * 4; // ±2°C
         int humidityVariation = random.nextInt(11) - 5; // ±5%
         double pressureVariation = (random.nextDouble() - 0.5) * 10; // ±5 hPa
         double windVariation = (random.nextDouble() - 0.5) * 6; // ±3 m/s
-        
+
         return new WeatherData(
-            baseData.getCityName(),
-            Math.round((baseData.getTemperature() + tempVariation) * 10.0) / 10.0,
-            baseData.getDescription(),
-            Math.max(0, Math.min(100, baseData.getHumidity() + humidityVariation)),
-            Math.round((baseData.getPressure() + pressureVariation) * 100.0) / 100.0,
-            Math.max(0, Math.round((baseData.getWindSpeed() + windVariation) * 10.0) / 10.0),
+            baseData.cityName(),
+            Math.round((baseData.temperature() + tempVariation) * 10.0) / 10.0,
+            baseData.description(),
+            Math.max(0, Math.min(100, baseData.humidity() + humidityVariation)),
+            Math.round((baseData.pressure() + pressureVariation) * 100.0) / 100.0,
+            Math.max(0, Math.round((baseData.windSpeed() + windVariation) * 10.0) / 10.0),
             "mock"
         );
     }
-    
+
     private WeatherData generateRandomWeatherData(String cityName) {
-        String[] descriptions = {"Sunny", "Partly cloudy", "Cloudy", "Rainy", "Clear", "Overcast"};
-        String description = descriptions[random.nextInt(descriptions.length)];
-        
+        RandomGenerator random = random(cityName);
+        String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+
         double temperature = 5 + random.nextDouble() * 30; // 5-35°C
         int humidity = 30 + random.nextInt(50); // 30-80%
         double pressure = 1000 + random.nextDouble() * 30; // 1000-1030 hPa
         double windSpeed = random.nextDouble() * 25; // 0-25 m/s
-        
+
         return new WeatherData(
             cityName,
             Math.round(temperature * 10.0) / 10.0,
@@ -93,4 +117,24 @@ public class MockWeatherService {
             "mock"
         );
     }
+
+    private RandomGenerator random(String cityName) {
+        if (seed == null) {
+            return ThreadLocalRandom.current();
+        }
+        String key = cityName.trim().toLowerCase(Locale.ROOT);
+        AtomicLong sequence = sequences.get(key);
+        if (sequence == null) {
+            sequence = sequences.size() < MAX_SEEDED_CITIES
+                    ? sequences.computeIfAbsent(key, k -> new AtomicLong())
+                    : overflowSequence;
+        }
+        long n = sequence.getAndIncrement();
+        // SplittableRandom mixes its seed, so neighbouring (city, n) pairs give unrelated values
+        return new SplittableRandom(seed ^ key.hashCode() * 0x9E3779B97F4A7C15L ^ n * 0xBF58476D1CE4E5B9L);
+    }
+
+    private record CityWeather(String cityName, double temperature, String description,
+                               int humidity, double pressure, double windSpeed) {
+    }
 }
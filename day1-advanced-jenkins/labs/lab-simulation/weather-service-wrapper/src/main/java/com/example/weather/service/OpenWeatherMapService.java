@@ -1,77 +1,220 @@
 package com.example.weather.service;
 
+import com.example.weather.config.CacheConfig;
+import com.example.weather.dto.OpenWeatherMapGroupResponse;
+import com.example.weather.dto.OpenWeatherMapResponse;
+import com.example.weather.model.City;
 import com.example.weather.model.WeatherData;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OpenWeatherMapService {
     
+    static final String RESILIENCE_INSTANCE = "openWeatherMap";
+    
+    private static final int MAX_UPSTREAM_IDS = 10_000;
+    
     private final WebClient webClient;
     private final String apiKey;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final Bulkhead bulkhead;
+    private final Duration batchWindow;
+    private final int batchMaxSize;
+    private UpstreamBatcher batcher;
+    private final DistributionSummary groupSizes;
+    // OpenWeatherMap's id of each city, learned from its lookups by name; an evicted id is learned again
+    private final Cache<Integer, Long> upstreamIds = Caffeine.newBuilder().maximumSize(MAX_UPSTREAM_IDS).build();
     
-    public OpenWeatherMapService(@Value("${weather.api.key:0c624616aac8eb7faa80df140cb139d7}") String apiKey) {
+    public OpenWeatherMapService(@Value("${weather.api.key:0c624616aac8eb7faa80df140cb139d7}") String apiKey,
+                                 @Value("${weather.api.timeout:5000}") long timeoutMillis,
+                                 @Value("${weather.api.batch.window:10ms}") Duration batchWindow,
+                                 @Value("${weather.api.batch.max-size:20}") int batchMaxSize,
+                                 WebClient openWeatherMapWebClient,
+                                 CircuitBreakerRegistry circuitBreakerRegistry,
+                                 RetryRegistry retryRegistry,
+                                 BulkheadRegistry bulkheadRegistry,
+                                 MeterRegistry meterRegistry) {
         this.apiKey = apiKey;
-        this.webClient = WebClient.builder()
-                .baseUrl("http://api.openweathermap.org/data/2.5")
-                .build();
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.webClient = openWeatherMapWebClient;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_INSTANCE);
+        this.retry = retryRegistry.retry(RESILIENCE_INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_INSTANCE);
+        this.batchWindow = batchWindow;
+        this.batchMaxSize = batchMaxSize;
+        this.groupSizes = DistributionSummary.builder("weather.upstream.group.size")
+                .description("Cities per OpenWeatherMap group call")
+                .register(meterRegistry);
     }
     
-    public Mono<WeatherData> getWeatherData(String cityName) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
+    /**
+     * Starts batching once the service is fully built, since the batcher calls back into it.
+     * A window of 0 or a maximum size of 1 leaves every lookup to go out on its own.
+     */
+    @PostConstruct
+    public void startBatching() {
+        if (batchWindow.isPositive() && batchMaxSize > 1) {
+            batcher = new UpstreamBatcher(batchWindow, batchMaxSize, this::getWeatherDataGroup, Schedulers.parallel());
+        }
+    }
+    
+    /**
+     * Cached variant of {@link #getWeatherData(City)}, keyed by city id. Concurrent callers
+     * for the same city share one upstream call, whatever spelling they used; failed lookups
+     * are not cached.
+     */
+    @Cacheable(cacheNames = CacheConfig.WEATHER_CACHE, key = "#city.id", sync = true)
+    public Mono<WeatherData> getCachedWeatherData(City city) {
+        return getWeatherData(city);
+    }
+    
+    /**
+     * Fetches the current weather of a city from OpenWeatherMap. The first lookup of a city
+     * goes by name and learns its OpenWeatherMap id. After that, lookups of different cities
+     * arriving within {@code weather.api.batch.window} share one group call of up to
+     * {@code weather.api.batch.max-size} ids. A city the group call leaves out is looked up
+     * by name again.
+     */
+    public Mono<WeatherData> getWeatherData(City city) {
+        if (batcher == null || !city.isRegistered() || upstreamIds.getIfPresent(city.getId()) == null) {
+            return getWeatherDataByName(city);
+        }
+        return batcher.lookup(city)
+                .switchIfEmpty(Mono.defer(() -> getWeatherDataByName(city)));
+    }
+    
+    private Mono<WeatherData> getWeatherDataByName(City city) {
+        return call(uriBuilder -> uriBuilder
                         .path("/weather")
-                        .queryParam("q", cityName)
+                        .queryParam("q", city.getName())
+                        .queryParam("appid", apiKey)
+                        .queryParam("units", "metric")
+                        .build(),
+                OpenWeatherMapResponse.class)
+                .mapNotNull(response -> {
+                    if (response.id() != null && city.isRegistered()) {
+                        upstreamIds.put(city.getId(), response.id());
+                    }
+                    return mapToWeatherData(response);
+                });
+    }
+    
+    /**
+     * One group call for cities whose OpenWeatherMap id is known. Spellings that are not aliased
+     * to one city can share an OpenWeatherMap id, so each id maps back to a list of cities.
+     */
+    Mono<Map<Integer, WeatherData>> getWeatherDataGroup(List<City> cities) {
+        if (cities.size() == 1) {
+            City city = cities.get(0);
+            return getWeatherDataByName(city).map(weatherData -> Map.of(city.getId(), weatherData));
+        }
+        Map<Long, List<Integer>> cityIds = new HashMap<>();
+        for (City city : cities) {
+            Long upstreamId = upstreamIds.getIfPresent(city.getId());
+            if (upstreamId != null) {
+                cityIds.computeIfAbsent(upstreamId, id -> new ArrayList<>()).add(city.getId());
+            }
+        }
+        if (cityIds.isEmpty()) {
+            // Every id was evicted since the batch was queued; the callers fall back to lookups by name
+            return Mono.just(Map.of());
+        }
+        groupSizes.record(cityIds.size());
+        return call(uriBuilder -> uriBuilder
+                        .path("/group")
+                        .queryParam("id", cityIds.keySet().stream().map(String::valueOf).collect(Collectors.joining(",")))
                         .queryParam("appid", apiKey)
                         .queryParam("units", "metric")
-                        .build())
+                        .build(),
+                OpenWeatherMapGroupResponse.class)
+                .map(group -> {
+                    Map<Integer, WeatherData> readings = new HashMap<>();
+                    for (OpenWeatherMapResponse response : group.list() != null ? group.list() : List.<OpenWeatherMapResponse>of()) {
+                        WeatherData weatherData = mapToWeatherData(response);
+                        if (weatherData == null) {
+                            // Only this entry's cities are left out, and looked up by name again
+                            continue;
+                        }
+                        for (Integer cityId : cityIds.getOrDefault(response.id(), List.of())) {
+                            readings.put(cityId, weatherData);
+                        }
+                    }
+                    return readings;
+                });
+    }
+    
+    /**
+     * One upstream request. Each attempt is bounded by {@code weather.api.timeout} and the
+     * bulkhead; failures are retried with jittered backoff and counted by the circuit breaker,
+     * which fails fast while open. The bulkhead sits outside the circuit breaker: a local burst
+     * it rejects says nothing about the upstream, so it must not open the circuit. A group call
+     * counts as a single call.
+     */
+    private <T> Mono<T> call(Function<UriBuilder, URI> uri, Class<T> responseType) {
+        return webClient.get()
+                .uri(uri)
                 .retrieve()
-                .bodyToMono(Map.class)
-                .map(this::mapToWeatherData)
-                .onErrorReturn(createErrorWeatherData(cityName));
+                .bodyToMono(responseType)
+                .timeout(timeout)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(RetryOperator.of(retry));
     }
     
-    private WeatherData mapToWeatherData(Map<String, Object> response) {
-        String cityName = (String) response.get("name");
-        
-        @SuppressWarnings("unchecked")
-        Map<String, Object> main = (Map<String, Object>) response.get("main");
-        @SuppressWarnings("unchecked")
-        Map<String, Object> weather = (Map<String, Object>) ((java.util.List<?>) response.get("weather")).get(0);
-        @SuppressWarnings("unchecked")
-        Map<String, Object> wind = (Map<String, Object>) response.get("wind");
-        
-        Double temperature = ((Number) main.get("temp")).doubleValue();
-        Integer humidity = ((Number) main.get("humidity")).intValue();
-        Double pressure = ((Number) main.get("pressure")).doubleValue();
-        String description = (String) weather.get("description");
-        Double windSpeed = wind.get("speed") != null ? 
-                ((Number) wind.get("speed")).doubleValue() : 0.0;
+    /**
+     * The reading in a response, or {@code null} when it has no {@code main} block; a missing
+     * {@code weather} array gives an empty description.
+     */
+    WeatherData mapToWeatherData(OpenWeatherMapResponse response) {
+        OpenWeatherMapResponse.Main main = response.main();
+        if (main == null) {
+            return null;
+        }
+        List<OpenWeatherMapResponse.Weather> weather = response.weather();
+        String description = weather != null && !weather.isEmpty() && weather.get(0).description() != null ?
+                weather.get(0).description() : "";
+        double windSpeed = response.wind() != null && response.wind().speed() != null ?
+                response.wind().speed() : 0.0;
         
         return new WeatherData(
-                cityName,
-                Math.round(temperature * 10.0) / 10.0,
+                response.name(),
+                Math.round(main.temp() * 10.0) / 10.0,
                 description,
-                humidity,
-                pressure,
+                main.humidity(),
+                main.pressure(),
                 Math.round(windSpeed * 10.0) / 10.0,
                 "api"
         );
     }
-    
-    private WeatherData createErrorWeatherData(String cityName) {
-        return new WeatherData(
-                cityName,
-                0.0,
-                "Error fetching data",
-                0,
-                0.0,
-                0.0,
-                "api-error"
-        );
-    }
 }
@@ -0,0 +1,259 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherCursor;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.model.WeatherData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The newest readings of each city, kept in memory so {@code /recent} pages rarely need the
+ * database. Readings are appended once they are stored, in {@code (timestamp, id)} order, to a
+ * per-city ring buffer of at most {@code weather.recent.buffer.capacity} readings (rounded up to
+ * a power of two). The buffer is kept in primitive arrays; descriptions and sources are shared
+ * strings.
+ * <p>
+ * Every reading stored since startup passes through here, so a city's buffer holds all of its
+ * readings newer than the last one it evicted, or all since startup if it has not evicted any.
+ * A page that reaches past that point continues from the database. Cities beyond
+ * {@code weather.recent.buffer.max-cities} are not buffered and are always read from the database.
+ */
+@Component
+public class RecentWeatherBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_SHARED_STRINGS = 1024;
+
+    private final int capacity;
+    private final int maxCities;
+    private final long startedAt = toMicros(LocalDateTime.now());
+    private final Map<Integer, CityBuffer> buffers = new ConcurrentHashMap<>();
+    // Descriptions come in a new String per upstream response; keep one copy of each
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private volatile boolean citiesDropped;
+
+    public RecentWeatherBuffer(@Value("${weather.recent.buffer.capacity:256}") int capacity,
+                               @Value("${weather.recent.buffer.max-cities:1000}") int maxCities) {
+        this.capacity = capacity > 0 ? Math.max(INITIAL_CAPACITY, Integer.highestOneBit(capacity - 1) << 1) : 0;
+        this.maxCities = maxCities;
+    }
+
+    /**
+     * One page of readings and whether it is final: {@code complete} is false when older
+     * readings in the range may exist that the buffer no longer holds.
+     */
+    public record Window(List<WeatherReading> items, boolean complete) {
+    }
+
+    /**
+     * Adds a stored reading. Readings without an id or city were not stored and are ignored.
+     */
+    public void record(WeatherData weatherData) {
+        if (capacity == 0 || weatherData.getId() == null || weatherData.getCityId() == null) {
+            return;
+        }
+        CityBuffer buffer = buffers.get(weatherData.getCityId());
+        if (buffer == null) {
+            if (buffers.size() >= maxCities) {
+                citiesDropped = true;
+                return;
+            }
+            buffer = buffers.computeIfAbsent(weatherData.getCityId(), id -> new CityBuffer(weatherData.getCityName()));
+        }
+        buffer.append(weatherData);
+    }
+
+    /**
+     * The readings of the city taken at or after {@code since} and before the cursor, newest
+     * first, up to {@code limit}.
+     */
+    public Window recent(int cityId, LocalDateTime since, WeatherCursor before, int limit) {
+        CityBuffer buffer = buffers.get(cityId);
+        if (buffer == null) {
+            // Nothing stored for the city since startup, unless it was turned away
+            boolean complete = capacity > 0 && !citiesDropped && toMicros(since) > startedAt;
+            return new Window(List.of(), complete);
+        }
+        return buffer.read(toMicros(since), toMicros(before.timestamp()), before.id(), limit);
+    }
+
+    private String shared(String value) {
+        if (value == null || strings.size() >= MAX_SHARED_STRINGS) {
+            return value;
+        }
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Timestamps are kept in epoch microseconds, rounded like the {@code TIMESTAMP(6)} column,
+     * so buffered readings and cursors match the stored rows.
+     */
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + (timestamp.getNano() + 500) / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    private static int compare(long timestamp, long id, long otherTimestamp, long otherId) {
+        int order = Long.compare(timestamp, otherTimestamp);
+        return order != 0 ? order : Long.compare(id, otherId);
+    }
+
+    /**
+     * Ring buffer ordered oldest to newest from {@code head}. Arrays start small and double up
+     * to the capacity, which is a power of two.
+     */
+    private final class CityBuffer {
+        private final String cityName;
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private double[] temperatures = new double[INITIAL_CAPACITY];
+        private int[] humidities = new int[INITIAL_CAPACITY];
+        private double[] pressures = new double[INITIAL_CAPACITY];
+        private double[] windSpeeds = new double[INITIAL_CAPACITY];
+        private String[] descriptions = new String[INITIAL_CAPACITY];
+        private String[] sources = new String[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+        // Readings at or before this position may be missing
+        private long evictedTimestamp = startedAt;
+        private long evictedId = Long.MIN_VALUE;
+
+        private CityBuffer(String cityName) {
+            this.cityName = cityName;
+        }
+
+        void append(WeatherData weatherData) {
+            long timestamp = toMicros(weatherData.getTimestamp());
+            long id = weatherData.getId();
+            String description = shared(weatherData.getDescription());
+            String source = shared(weatherData.getSource());
+            lock.lock();
+            try {
+                if (compare(timestamp, id, evictedTimestamp, evictedId) <= 0) {
+                    // Older than what the buffer covers; the database has it
+                    return;
+                }
+                if (size == ids.length) {
+                    if (ids.length < capacity) {
+                        grow();
+                    } else {
+                        int oldest = head;
+                        if (compare(timestamp, id, timestamps[oldest], ids[oldest]) < 0) {
+                            // Older than everything held: the buffer stops covering it instead
+                            evictedTimestamp = timestamp;
+                            evictedId = id;
+                            return;
+                        }
+                        evictedTimestamp = timestamps[oldest];
+                        evictedId = ids[oldest];
+                        head = (head + 1) & (ids.length - 1);
+                        size--;
+                    }
+                }
+                // Concurrent batches can land slightly out of order; shift newer readings up
+                int mask = ids.length - 1;
+                int position = size;
+                while (position > 0) {
+                    int previous = (head + position - 1) & mask;
+                    if (compare(timestamps[previous], ids[previous], timestamp, id) < 0) {
+                        break;
+                    }
+                    move(previous, (head + position) & mask);
+                    position--;
+                }
+                int slot = (head + position) & mask;
+                ids[slot] = id;
+                timestamps[slot] = timestamp;
+                temperatures[slot] = weatherData.getTemperature();
+                humidities[slot] = weatherData.getHumidity();
+                pressures[slot] = weatherData.getPressure();
+                windSpeeds[slot] = weatherData.getWindSpeed();
+                descriptions[slot] = description;
+                sources[slot] = source;
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Window read(long since, long beforeTimestamp, long beforeId, int limit) {
+            List<WeatherReading> items = new ArrayList<>(Math.min(limit, INITIAL_CAPACITY));
+            lock.lock();
+            try {
+                int mask = ids.length - 1;
+                for (int i = size - 1; i >= 0 && items.size() < limit; i--) {
+                    int slot = (head + i) & mask;
+                    if (timestamps[slot] < since) {
+                        return new Window(items, true);
+                    }
+                    if (compare(timestamps[slot], ids[slot], beforeTimestamp, beforeId) < 0) {
+                        items.add(new WeatherReading(ids[slot], cityName, temperatures[slot], descriptions[slot],
+                                humidities[slot], pressures[slot], windSpeeds[slot], fromMicros(timestamps[slot]),
+                                sources[slot]));
+                    }
+                }
+                return new Window(items, items.size() == limit || since > evictedTimestamp);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void move(int from, int to) {
+            ids[to] = ids[from];
+            timestamps[to] = timestamps[from];
+            temperatures[to] = temperatures[from];
+            humidities[to] = humidities[from];
+            pressures[to] = pressures[from];
+            windSpeeds[to] = windSpeeds[from];
+            descriptions[to] = descriptions[from];
+            sources[to] = sources[from];
+        }
+
+        private void grow() {
+            int length = ids.length * 2;
+            long[] newIds = new long[length];
+            long[] newTimestamps = new long[length];
+            double[] newTemperatures = new double[length];
+            int[] newHumidities = new int[length];
+            double[] newPressures = new double[length];
+            double[] newWindSpeeds = new double[length];
+            String[] newDescriptions = new String[length];
+            String[] newSources = new String[length];
+            int mask = ids.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) & mask;
+                newIds[i] = ids[slot];
+                newTimestamps[i] = timestamps[slot];
+                newTemperatures[i] = temperatures[slot];
+                newHumidities[i] = humidities[slot];
+                newPressures[i] = pressures[slot];
+                newWindSpeeds[i] = windSpeeds[slot];
+                newDescriptions[i] = descriptions[slot];
+                newSources[i] = sources[slot];
+            }
+            ids = newIds;
+            timestamps = newTimestamps;
+            temperatures = newTemperatures;
+            humidities = newHumidities;
+            pressures = newPressures;
+            windSpeeds = newWindSpeeds;
+            descriptions = newDescriptions;
+            sources = newSources;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Micro-batches upstream lookups. The distinct cities requested within {@code window} of the
+ * first one are handed to the {@link BatchCall} together; a batch that reaches {@code maxSize}
+ * cities is sent at once. Callers of the same city share its result. A city the call returns
+ * nothing for completes empty, and a failed call fails every caller in the batch.
+ * <p>
+ * A batch is sent once it closes, even if some of its callers have cancelled in the meantime.
+ */
+final class UpstreamBatcher {
+
+    /**
+     * Looks up several cities in one upstream call.
+     */
+    @FunctionalInterface
+    interface BatchCall {
+
+        /**
+         * Readings by city id; cities missing from the map were not found.
+         */
+        Mono<Map<Integer, WeatherData>> fetch(List<City> cities);
+    }
+
+    private final Duration window;
+    private final int maxSize;
+    private final BatchCall batchCall;
+    private final Scheduler scheduler;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock; replaced, never cleared, when a batch closes
+    private Map<Integer, Pending> open = new LinkedHashMap<>();
+
+    UpstreamBatcher(Duration window, int maxSize, BatchCall batchCall, Scheduler scheduler) {
+        this.window = window;
+        this.maxSize = maxSize;
+        this.batchCall = batchCall;
+        this.scheduler = scheduler;
+    }
+
+    Mono<WeatherData> lookup(City city) {
+        return Mono.defer(() -> {
+            Pending pending;
+            Map<Integer, Pending> full = null;
+            lock.lock();
+            try {
+                pending = open.get(city.getId());
+                if (pending == null) {
+                    pending = new Pending(city);
+                    open.put(city.getId(), pending);
+                    if (open.size() >= maxSize) {
+                        full = close();
+                    } else if (open.size() == 1) {
+                        Map<Integer, Pending> batch = open;
+                        scheduler.schedule(() -> closeWhenDue(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (full != null) {
+                send(full);
+            }
+            return pending.result.asMono();
+        });
+    }
+
+    private void closeWhenDue(Map<Integer, Pending> batch) {
+        lock.lock();
+        try {
+            if (open != batch) {
+                // Already sent because it filled up
+                return;
+            }
+            close();
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+
+    private Map<Integer, Pending> close() {
+        Map<Integer, Pending> batch = open;
+        open = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void send(Map<Integer, Pending> batch) {
+        List<City> cities = batch.values().stream().map(pending -> pending.city).toList();
+        Mono.defer(() -> batchCall.fetch(cities))
+                .defaultIfEmpty(Map.of())
+                .subscribe(readings -> batch.values().forEach(pending -> {
+                    WeatherData reading = readings.get(pending.city.getId());
+                    if (reading != null) {
+                        pending.result.tryEmitValue(reading);
+                    } else {
+                        pending.result.tryEmitEmpty();
+                    }
+                }), e -> batch.values().forEach(pending -> pending.result.tryEmitError(e)));
+    }
+
+    private static final class Pending {
+        private final City city;
+        private final Sinks.One<WeatherData> result = Sinks.one();
+
+        private Pending(City city) {
+            this.city = city;
+        }
+    }
+}
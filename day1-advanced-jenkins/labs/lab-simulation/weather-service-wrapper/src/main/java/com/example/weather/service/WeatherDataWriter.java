@@ -0,0 +1,224 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for {@link WeatherData} rows. Readings are queued on the request path
+ * and inserted in batches by a scheduled flush. On shutdown the queue is drained until no
+ * writer is still adding to it, so no reading is lost.
+ */
+@Component
+public class WeatherDataWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherDataWriter.class);
+
+    /**
+     * What to do with a reading when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait on the persistence scheduler until the queue has room. */
+        BLOCK,
+        /** Insert the reading directly on the persistence scheduler. */
+        CALLER_RUNS,
+        /** Discard the reading and count it as dropped. */
+        DROP
+    }
+
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherStats weatherStats;
+    private final WeatherVersions weatherVersions;
+    private final RecentWeatherBuffer recentWeatherBuffer;
+    private final Scheduler persistenceScheduler;
+    private final BlockingQueue<WeatherData> queue;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // Writers between checking closed and finishing their offer or put
+    private final AtomicInteger activeWriters = new AtomicInteger();
+    private final Timer batchTimer;
+    private volatile boolean closed;
+
+    public WeatherDataWriter(WeatherDataRepository weatherDataRepository,
+                             WeatherStats weatherStats,
+                             WeatherVersions weatherVersions,
+                             RecentWeatherBuffer recentWeatherBuffer,
+                             Scheduler persistenceScheduler,
+                             @Value("${weather.persistence.queue-capacity:10000}") int queueCapacity,
+                             @Value("${weather.persistence.batch-size:100}") int batchSize,
+                             @Value("${weather.persistence.overflow-policy:caller-runs}") OverflowPolicy overflowPolicy,
+                             MeterRegistry meterRegistry) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.weatherStats = weatherStats;
+        this.weatherVersions = weatherVersions;
+        this.recentWeatherBuffer = recentWeatherBuffer;
+        this.persistenceScheduler = persistenceScheduler;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.batchTimer = Timer.builder("weather.persistence.batch")
+                .description("Time to insert one write-behind batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("weather.persistence.queue.size", queue, BlockingQueue::size)
+                .description("Readings waiting in the write-behind queue")
+                .register(meterRegistry);
+        Gauge.builder("weather.persistence.queue.capacity", () -> queueCapacity)
+                .description("Capacity of the write-behind queue")
+                .register(meterRegistry);
+        FunctionCounter.builder("weather.persistence.dropped", droppedCount, AtomicLong::get)
+                .description("Readings dropped because the queue was full or the insert failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a reading for insertion. Completes immediately unless the queue is full,
+     * in which case the configured {@link OverflowPolicy} applies.
+     */
+    public Mono<Void> write(WeatherData weatherData) {
+        activeWriters.incrementAndGet();
+        try {
+            if (closed) {
+                return saveDirectly(weatherData);
+            }
+            if (queue.offer(weatherData)) {
+                return Mono.empty();
+            }
+        } finally {
+            activeWriters.decrementAndGet();
+        }
+        return switch (overflowPolicy) {
+            case BLOCK -> Mono.<Void>defer(() -> {
+                activeWriters.incrementAndGet();
+                try {
+                    if (closed) {
+                        return saveDirectly(weatherData);
+                    }
+                    queue.put(weatherData);
+                    return Mono.empty();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return saveDirectly(weatherData);
+                } finally {
+                    activeWriters.decrementAndGet();
+                }
+            }).subscribeOn(persistenceScheduler);
+            case CALLER_RUNS -> saveDirectly(weatherData);
+            case DROP -> {
+                droppedCount.incrementAndGet();
+                log.warn("Write-behind queue full, dropped reading for {}", weatherData.getCityName());
+                yield Mono.empty();
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${weather.persistence.flush-interval:500}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<WeatherData> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                saveBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops queueing and drains the queue. Writers that got past the closed check before it
+     * was set may still add readings, and blocked ones only get room once the queue drains,
+     * so flushing repeats until the queue is empty and none of them is active. Readings
+     * written afterwards are inserted directly.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        flush();
+        while (activeWriters.get() > 0 || !queue.isEmpty()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            flush();
+        }
+        log.info("Write-behind queue drained on shutdown");
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void saveBatch(List<WeatherData> batch) {
+        try {
+            weatherStats.persist(() -> {
+                batchTimer.record(() -> weatherDataRepository.saveAll(batch));
+                batch.forEach(this::recorded);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist batch of {} weather readings, inserting them one by one", batch.size(), e);
+            batch.forEach(this::saveAlone);
+        }
+    }
+
+    /**
+     * Inserts one reading of a failed batch; only a reading that fails on its own is dropped.
+     */
+    private void saveAlone(WeatherData weatherData) {
+        // The failed batch may have assigned an id that was rolled back
+        weatherData.setId(null);
+        try {
+            weatherStats.persist(() -> {
+                weatherDataRepository.save(weatherData);
+                recorded(weatherData);
+            });
+        } catch (RuntimeException e) {
+            droppedCount.incrementAndGet();
+            log.error("Failed to persist weather reading for {}", weatherData.getCityName(), e);
+        }
+    }
+
+    private Mono<Void> saveDirectly(WeatherData weatherData) {
+        return Mono.fromRunnable(() -> weatherStats.persist(() -> {
+                    weatherDataRepository.save(weatherData);
+                    recorded(weatherData);
+                }))
+                .subscribeOn(persistenceScheduler)
+                .then();
+    }
+
+    /**
+     * Counts a committed reading and moves its versions forward, so conditional requests
+     * see the change only once it can be read.
+     */
+    private void recorded(WeatherData weatherData) {
+        weatherStats.record(weatherData);
+        weatherVersions.recordWrite(weatherData.getCityId());
+        recentWeatherBuffer.record(weatherData);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams {@code weather_data} rows, oldest first, as NDJSON or CSV. Rows are read in keyset
+ * chunks of {@code weather.export.chunk-size}, each in its own short auto-commit query, and
+ * written out before the next chunk is read: memory stays constant whatever the row count,
+ * and no connection or transaction is held while a slow client drains the response.
+ */
+@Service
+public class WeatherExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherExportService.class);
+
+    private static final LocalDateTime MIN_TIMESTAMP = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String COLUMNS = "id, city_name, temperature, description, humidity, pressure, wind_speed, timestamp, source";
+
+    /**
+     * Export file formats.
+     */
+    public enum Format {
+        /** One JSON object per line, with the same fields as {@code /history}. */
+        NDJSON("application/x-ndjson", "ndjson"),
+        /** RFC 4180 CSV with a header row and the table's column names. */
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CityRegistry cityRegistry;
+    private final int chunkSize;
+
+    public WeatherExportService(DataSource dataSource,
+                                CityRegistry cityRegistry,
+                                @Value("${weather.export.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(chunkSize);
+        this.cityRegistry = cityRegistry;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes the readings taken in {@code [from, to)}, optionally of one city, to {@code out}.
+     * Open bounds and a {@code null} city export everything. {@code out} is flushed after
+     * every chunk but not closed.
+     *
+     * @return the number of rows written
+     */
+    public long export(Format format, String cityName, LocalDateTime from, LocalDateTime to,
+                       OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+        rowWriter.writeHeader();
+        City city = cityName != null ? cityRegistry.find(cityName) : null;
+        if (cityName != null && city == null) {
+            // Never requested, so there are no readings
+            rowWriter.flush();
+            return 0;
+        }
+        Integer cityId = city != null ? city.getId() : null;
+        LocalDateTime until = to != null ? to : MAX_TIMESTAMP;
+        LocalDateTime afterTimestamp = from != null ? from : MIN_TIMESTAMP;
+        long afterId = Long.MIN_VALUE;
+        long rows = 0;
+        List<Row> chunk;
+        do {
+            chunk = readChunk(cityId, afterTimestamp, afterId, until);
+            for (Row row : chunk) {
+                rowWriter.write(row);
+            }
+            rowWriter.flush();
+            if (!chunk.isEmpty()) {
+                Row last = chunk.get(chunk.size() - 1);
+                afterTimestamp = last.timestamp();
+                afterId = last.id();
+                rows += chunk.size();
+            }
+        } while (chunk.size() == chunkSize);
+        log.info("Exported {} weather reading(s) as {} in {} ms", rows, format,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return rows;
+    }
+
+    /**
+     * Next rows after {@code (afterTimestamp, afterId)}. Starting the range at the previous chunk's
+     * last timestamp lets every chunk seek straight into the (timestamp, id) index.
+     */
+    private List<Row> readChunk(Integer cityId, LocalDateTime afterTimestamp, long afterId, LocalDateTime to) {
+        List<Object> args = new ArrayList<>(7);
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS)
+                .append(" FROM weather_data WHERE timestamp >= ? AND timestamp < ?");
+        args.add(afterTimestamp);
+        args.add(to);
+        if (cityId != null) {
+            sql.append(" AND city_id = ?");
+            args.add(cityId);
+        }
+        sql.append(" AND (timestamp > ? OR (timestamp = ? AND id > ?)) ORDER BY timestamp, id LIMIT ?");
+        args.add(afterTimestamp);
+        args.add(afterTimestamp);
+        args.add(afterId);
+        args.add(chunkSize);
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new Row(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getDouble(3),
+                rs.getString(4),
+                rs.getInt(5),
+                rs.getDouble(6),
+                rs.getDouble(7),
+                rs.getObject(8, LocalDateTime.class),
+                rs.getString(9)), args.toArray());
+    }
+
+    private record Row(long id, String cityName, double temperature, String description, int humidity,
+                       double pressure, double windSpeed, LocalDateTime timestamp, String source) {
+    }
+
+    private interface RowWriter {
+        default void writeHeader() throws IOException {
+        }
+
+        void write(Row row) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            // The response stream belongs to the caller, so the generator must not close it
+            this.generator = JSON_FACTORY.createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Row row) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.id());
+            generator.writeStringField("cityName", row.cityName());
+            generator.writeNumberField("temperature", row.temperature());
+            generator.writeStringField("description", row.description());
+            generator.writeNumberField("humidity", row.humidity());
+            generator.writeNumberField("pressure", row.pressure());
+            generator.writeNumberField("windSpeed", row.windSpeed());
+            generator.writeStringField("timestamp", row.timestamp().toString());
+            generator.writeStringField("source", row.source());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            writer.write(COLUMNS.replace(" ", ""));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(Row row) throws IOException {
+            writer.write(Long.toString(row.id()));
+            writer.write(',');
+            writeText(row.cityName());
+            writer.write(',');
+            writer.write(Double.toString(row.temperature()));
+            writer.write(',');
+            writeText(row.description());
+            writer.write(',');
+            writer.write(Integer.toString(row.humidity()));
+            writer.write(',');
+            writer.write(Double.toString(row.pressure()));
+            writer.write(',');
+            writer.write(Double.toString(row.windSpeed()));
+            writer.write(',');
+            writer.write(row.timestamp().toString());
+            writer.write(',');
+            writeText(row.source());
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        private void writeText(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.weather.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the weather lookup path. Tags are limited to fixed enums
+ * (stage, outcome, fallback reason) so city names never become tag values.
+ */
+@Component
+public class WeatherMetrics {
+
+    static final String STAGE_TIMER = "weather.stage";
+    static final String FALLBACK_COUNTER = "weather.fallback";
+    static final String STALE_COUNTER = "weather.stale";
+    static final String UNREGISTERED_COUNTER = "weather.city.unregistered";
+
+    /**
+     * Timed stages of {@link WeatherService#getWeatherData(String, boolean)}.
+     */
+    public enum Stage {
+        /** OpenWeatherMap lookup through the cache, including retries. */
+        UPSTREAM,
+        /** Mock reading generation, requested or as a fallback. */
+        MOCK,
+        /** Hand-off to the write-behind queue, or the direct insert when it is full. */
+        PERSIST,
+        /** Mapping the entity to the response DTO. */
+        CONVERT,
+        /** The whole lookup, from subscription to response. */
+        TOTAL;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Why a reading did not come from a live OpenWeatherMap lookup.
+     */
+    public enum FallbackReason {
+        /** OpenWeatherMap answered with an error status or no body. */
+        API_ERROR("api-error"),
+        /** The call failed: timeout, connection error, open circuit or full bulkhead. */
+        EXCEPTION("exception"),
+        /** The client asked for mock data. */
+        MOCK_BY_REQUEST("mock-by-request");
+
+        private final String tag;
+
+        FallbackReason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, ERROR, CANCELLED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer[]> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<FallbackReason, Counter> fallbackCounters = new EnumMap<>(FallbackReason.class);
+    private final Map<FallbackReason, Counter> staleCounters = new EnumMap<>(FallbackReason.class);
+    private final Counter unregisteredCounter;
+
+    public WeatherMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            Timer[] timers = new Timer[Outcome.values().length];
+            for (Outcome outcome : Outcome.values()) {
+                timers[outcome.ordinal()] = Timer.builder(STAGE_TIMER)
+                        .description("Time spent in each stage of a weather lookup")
+                        .tag("stage", stage.tag())
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+            }
+            stageTimers.put(stage, timers);
+        }
+        for (FallbackReason reason : FallbackReason.values()) {
+            fallbackCounters.put(reason, Counter.builder(FALLBACK_COUNTER)
+                    .description("Weather lookups served from mock data, by reason")
+                    .tag("reason", reason.tag)
+                    .register(meterRegistry));
+            staleCounters.put(reason, Counter.builder(STALE_COUNTER)
+                    .description("Weather lookups served from the last known good reading, by reason")
+                    .tag("reason", reason.tag)
+                    .register(meterRegistry));
+        }
+        unregisteredCounter = Counter.builder(UNREGISTERED_COUNTER)
+                .description("Weather lookups of new cities served unregistered because the city registry is full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Times {@code source} from subscription until it terminates or is cancelled.
+     * An empty completion counts as success.
+     */
+    public <T> Mono<T> time(Stage stage, Mono<T> source) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source.doFinally(signal -> sample.stop(timer(stage, outcome(signal))));
+        });
+    }
+
+    /**
+     * Times a synchronous stage; an exception is recorded as an error.
+     */
+    public <T> T record(Stage stage, Supplier<T> stageCall) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Outcome outcome = Outcome.ERROR;
+        try {
+            T result = stageCall.get();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } finally {
+            sample.stop(timer(stage, outcome));
+        }
+    }
+
+    public void fallback(FallbackReason reason) {
+        fallbackCounters.get(reason).increment();
+    }
+
+    public void stale(FallbackReason reason) {
+        staleCounters.get(reason).increment();
+    }
+
+    public void unregistered() {
+        unregisteredCounter.increment();
+    }
+
+    private Timer timer(Stage stage, Outcome outcome) {
+        return stageTimers.get(stage)[outcome.ordinal()];
+    }
+
+    private static Outcome outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> Outcome.ERROR;
+            case CANCEL -> Outcome.CANCELLED;
+            default -> Outcome.SUCCESS;
+        };
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherArchivedCount;
+import com.example.weather.repository.WeatherArchivedCountRepository;
+import com.example.weather.repository.WeatherDailyRollupRepository;
+import com.example.weather.repository.WeatherDataRepository;
+import com.example.weather.repository.WeatherHourlyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps {@code weather_data} bounded. Completed hours are rolled up into hourly aggregates
+ * and completed days into daily ones; raw readings older than {@code weather.retention.raw-window}
+ * and hourly rollups older than {@code weather.retention.hourly-window} are then deleted.
+ * Every step runs in its own short transaction.
+ * <p>
+ * Each rollup claims the raw readings it aggregates by stamping them with a run id. A reading
+ * stored after its hour was rolled up, such as a write-behind backlog longer than
+ * {@code weather.retention.rollup-delay}, stays unclaimed: the next run adds it to its hourly
+ * bucket, and to its daily bucket when that day is already rolled up. Unclaimed readings are not deleted.
+ */
+@Component
+public class WeatherRetentionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherRetentionJob.class);
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final WeatherDataRepository weatherDataRepository;
+    private final WeatherHourlyRollupRepository hourlyRollupRepository;
+    private final WeatherDailyRollupRepository dailyRollupRepository;
+    private final WeatherArchivedCountRepository archivedCountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final WeatherVersions weatherVersions;
+    private final Duration rawWindow;
+    private final Duration hourlyWindow;
+    private final Duration rollupDelay;
+    private final int batchSize;
+    // Claim ids only have to differ between rollup transactions, also across restarts
+    private final AtomicLong runs = new AtomicLong(System.currentTimeMillis());
+
+    public WeatherRetentionJob(WeatherDataRepository weatherDataRepository,
+                               WeatherHourlyRollupRepository hourlyRollupRepository,
+                               WeatherDailyRollupRepository dailyRollupRepository,
+                               WeatherArchivedCountRepository archivedCountRepository,
+                               TransactionTemplate transactionTemplate,
+                               WeatherVersions weatherVersions,
+                               @Value("${weather.retention.raw-window:7d}") Duration rawWindow,
+                               @Value("${weather.retention.hourly-window:90d}") Duration hourlyWindow,
+                               @Value("${weather.retention.rollup-delay:5m}") Duration rollupDelay,
+                               @Value("${weather.retention.batch-size:1000}") int batchSize) {
+        this.weatherDataRepository = weatherDataRepository;
+        this.hourlyRollupRepository = hourlyRollupRepository;
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.archivedCountRepository = archivedCountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.weatherVersions = weatherVersions;
+        this.rawWindow = rawWindow;
+        this.hourlyWindow = hourlyWindow;
+        this.rollupDelay = rollupDelay;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${weather.retention.cron:0 */15 * * * *}")
+    public void run() {
+        LocalDateTime now = LocalDateTime.now();
+        int hours = rollUpHours(now);
+        int lateReadings = rollUpLateReadings();
+        int days = rollUpDays();
+        long deletedReadings = deleteExpiredReadings(now);
+        int deletedHourly = deleteExpiredHourlyRollups(now);
+        if (hours > 0 || lateReadings > 0 || days > 0 || deletedReadings > 0 || deletedHourly > 0) {
+            weatherVersions.recordHistoryRewritten();
+        }
+        log.info("Weather retention: rolled up {} hour(s), {} late reading(s) and {} day(s), "
+                        + "deleted {} reading(s) and {} hourly rollup(s)",
+                hours, lateReadings, days, deletedReadings, deletedHourly);
+    }
+
+    /**
+     * Rolls up each complete hour since the last hourly bucket, one hour per transaction.
+     * Hours end {@code weather.retention.rollup-delay} before now so that queued
+     * write-behind readings have been flushed.
+     */
+    int rollUpHours(LocalDateTime now) {
+        LocalDateTime end = now.minus(rollupDelay).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime from = nextHourToRollUp();
+        int hours = 0;
+        while (from != null && from.isBefore(end)) {
+            LocalDateTime hourStart = from;
+            LocalDateTime hourEnd = hourStart.plusHours(1);
+            Integer buckets = transactionTemplate.execute(status -> {
+                long run = runs.incrementAndGet();
+                return weatherDataRepository.claimForRollup(run, hourStart, hourEnd) > 0
+                        ? hourlyRollupRepository.rollUpClaimed(run) : 0;
+            });
+            if (buckets != null && buckets > 0) {
+                hours++;
+                from = hourEnd;
+            } else {
+                // Skip idle hours straight to the next reading
+                LocalDateTime next = weatherDataRepository.findEarliestTimestampSince(hourEnd);
+                from = next != null ? next.truncatedTo(ChronoUnit.HOURS) : null;
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * Adds readings that arrived after their hour was rolled up to the hourly buckets, and to the
+     * daily buckets of days that are already rolled up, in one transaction.
+     *
+     * @return the number of late readings
+     */
+    int rollUpLateReadings() {
+        LocalDateTime hourlyWatermark = hourlyWatermark();
+        if (hourlyWatermark == null) {
+            return 0;
+        }
+        LocalDateTime latestDay = dailyRollupRepository.findLatestBucket();
+        Integer late = transactionTemplate.execute(status -> {
+            long run = runs.incrementAndGet();
+            int claimed = weatherDataRepository.claimForRollup(run, EPOCH, hourlyWatermark);
+            if (claimed > 0) {
+                hourlyRollupRepository.rollUpClaimed(run);
+                if (latestDay != null) {
+                    dailyRollupRepository.rollUpClaimed(run, latestDay.plusDays(1));
+                }
+            }
+            return claimed;
+        });
+        if (late != null && late > 0) {
+            log.warn("Added {} reading(s) stored after their hour was rolled up", late);
+        }
+        return late != null ? late : 0;
+    }
+
+    /**
+     * Rolls the hourly buckets of every day that is fully rolled up into daily buckets.
+     */
+    int rollUpDays() {
+        LocalDateTime hourlyWatermark = hourlyWatermark();
+        if (hourlyWatermark == null) {
+            return 0;
+        }
+        LocalDateTime latestDay = dailyRollupRepository.findLatestBucket();
+        LocalDateTime from = latestDay != null ? latestDay.plusDays(1) : hourlyRollupRepository.findEarliestBucket();
+        LocalDateTime to = hourlyWatermark.truncatedTo(ChronoUnit.DAYS);
+        if (from == null || !from.truncatedTo(ChronoUnit.DAYS).isBefore(to)) {
+            return 0;
+        }
+        LocalDateTime dayStart = from.truncatedTo(ChronoUnit.DAYS);
+        transactionTemplate.execute(status -> dailyRollupRepository.rollUp(dayStart, to));
+        return (int) ChronoUnit.DAYS.between(dayStart, to);
+    }
+
+    /**
+     * Deletes raw readings past the retention window in batches of {@code weather.retention.batch-size}.
+     * Readings that are not yet rolled up, late ones included, are kept; deleted ones are added
+     * to the archived counts.
+     */
+    long deleteExpiredReadings(LocalDateTime now) {
+        LocalDateTime hourlyWatermark = hourlyWatermark();
+        if (hourlyWatermark == null) {
+            return 0;
+        }
+        LocalDateTime windowStart = now.minus(rawWindow);
+        LocalDateTime cutoff = windowStart.isBefore(hourlyWatermark) ? windowStart : hourlyWatermark;
+        long deleted = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> deleteBatch(cutoff));
+            deleted += batch;
+        } while (batch == batchSize);
+        return deleted;
+    }
+
+    int deleteExpiredHourlyRollups(LocalDateTime now) {
+        LocalDateTime latestDay = dailyRollupRepository.findLatestBucket();
+        if (latestDay == null) {
+            return 0;
+        }
+        LocalDateTime windowStart = now.minus(hourlyWindow);
+        LocalDateTime dailyWatermark = latestDay.plusDays(1);
+        LocalDateTime cutoff = windowStart.isBefore(dailyWatermark) ? windowStart : dailyWatermark;
+        Integer deleted = transactionTemplate.execute(status -> hourlyRollupRepository.deleteBucketsBefore(cutoff));
+        return deleted != null ? deleted : 0;
+    }
+
+    private int deleteBatch(LocalDateTime cutoff) {
+        List<Object[]> expired = weatherDataRepository.findExpired(cutoff, batchSize);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(expired.size());
+        Map<WeatherArchivedCount.Key, Long> counts = new HashMap<>();
+        Map<Integer, String> cityNames = new HashMap<>();
+        for (Object[] row : expired) {
+            ids.add((Long) row[0]);
+            counts.merge(new WeatherArchivedCount.Key((Integer) row[1], (String) row[3]), 1L, Long::sum);
+            cityNames.putIfAbsent((Integer) row[1], (String) row[2]);
+        }
+        List<WeatherArchivedCount> archived = archivedCountRepository.findAllById(counts.keySet());
+        Map<WeatherArchivedCount.Key, WeatherArchivedCount> byKey = new HashMap<>();
+        archived.forEach(count -> byKey.put(new WeatherArchivedCount.Key(count.getCityId(), count.getSource()), count));
+        counts.forEach((key, count) -> {
+            WeatherArchivedCount total = byKey.computeIfAbsent(key,
+                    k -> new WeatherArchivedCount(k.getCityId(), cityNames.get(k.getCityId()), k.getSource()));
+            total.setRequestCount(total.getRequestCount() + count);
+        });
+        archivedCountRepository.saveAll(byKey.values());
+        weatherDataRepository.deleteAllByIdInBatch(ids);
+        return expired.size();
+    }
+
+    private LocalDateTime nextHourToRollUp() {
+        LocalDateTime latestHour = hourlyRollupRepository.findLatestBucket();
+        if (latestHour != null) {
+            return latestHour.plusHours(1);
+        }
+        LocalDateTime earliest = weatherDataRepository.findEarliestTimestampSince(EPOCH);
+        return earliest != null ? earliest.truncatedTo(ChronoUnit.HOURS) : null;
+    }
+
+    /**
+     * Start of the first hour that is not rolled up yet; raw readings before it are covered by rollups.
+     */
+    private LocalDateTime hourlyWatermark() {
+        LocalDateTime latestHour = hourlyRollupRepository.findLatestBucket();
+        return latestHour != null ? latestHour.plusHours(1) : null;
+    }
+}
@@ -1,77 +1,343 @@
 package com.example.weather.service;
 
+import com.example.weather.dto.WeatherCursor;
+import com.example.weather.dto.WeatherPage;
+import com.example.weather.dto.WeatherReading;
 import com.example.weather.dto.WeatherResponse;
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherDailyRollup;
 import com.example.weather.model.WeatherData;
+import com.example.weather.model.WeatherHourlyRollup;
+import com.example.weather.model.WeatherResolution;
+import com.example.weather.model.WeatherRollup;
+import com.example.weather.repository.WeatherDailyRollupRepository;
 import com.example.weather.repository.WeatherDataRepository;
+import com.example.weather.repository.WeatherHourlyRollupRepository;
+import com.example.weather.repository.WeatherRollupRepository;
+import com.example.weather.service.WeatherMetrics.FallbackReason;
+import com.example.weather.service.WeatherMetrics.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
-@Transactional
 public class WeatherService {
     
+    private static final Logger log = LoggerFactory.getLogger(WeatherService.class);
+    
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
     @Autowired
     private WeatherDataRepository weatherDataRepository;
     
+    @Autowired
+    private WeatherHourlyRollupRepository hourlyRollupRepository;
+    
+    @Autowired
+    private WeatherDailyRollupRepository dailyRollupRepository;
+    
     @Autowired
     private MockWeatherService mockWeatherService;
     
     @Autowired
     private OpenWeatherMapService openWeatherMapService;
     
-    public WeatherResponse getWeatherData(String cityName, boolean useRealApi) {
-        WeatherData weatherData;
-        
-        if (useRealApi) {
-            // Try to get from real API first
-            try {
-                weatherData = openWeatherMapService.getWeatherData(cityName).block();
-                if (weatherData != null && !"api-error".equals(weatherData.getSource())) {
-                    weatherData = weatherDataRepository.save(weatherData);
-                } else {
-                    // Fallback to mock data
-                    weatherData = mockWeatherService.getMockWeatherData(cityName);
-                    weatherData = weatherDataRepository.save(weatherData);
-                }
-            } catch (Exception e) {
-                // Fallback to mock data on error
-                weatherData = mockWeatherService.getMockWeatherData(cityName);
-                weatherData = weatherDataRepository.save(weatherData);
-            }
-        } else {
-            // Use mock data
-            weatherData = mockWeatherService.getMockWeatherData(cityName);
-            weatherData = weatherDataRepository.save(weatherData);
+    @Autowired
+    private WeatherDataWriter weatherDataWriter;
+    
+    @Autowired
+    private WeatherStats weatherStats;
+    
+    @Autowired
+    private WeatherMetrics weatherMetrics;
+    
+    @Autowired
+    private HotCityRefresher hotCityRefresher;
+    
+    @Autowired
+    private CityRegistry cityRegistry;
+    
+    @Autowired
+    private RecentWeatherBuffer recentWeatherBuffer;
+    
+    @Autowired
+    private Scheduler persistenceScheduler;
+    
+    @Value("${weather.history.max-page-size:1000}")
+    private int maxPageSize;
+    
+    @Value("${weather.batch.max-concurrency:8}")
+    private int batchConcurrency;
+    
+    @Value("${weather.retention.raw-window:7d}")
+    private Duration rawWindow;
+    
+    @Value("${weather.retention.hourly-window:90d}")
+    private Duration hourlyWindow;
+    
+    public Mono<WeatherResponse> getWeatherData(String cityName, boolean useRealApi) {
+        return weatherMetrics.time(Stage.TOTAL, resolveCity(cityName)
+                .flatMap(city -> (!city.isRegistered() ? getUnregisteredWeatherData(city, useRealApi) : useRealApi ?
+                        getRealWeatherData(city) : getMockWeatherData(city, FallbackReason.MOCK_BY_REQUEST))
+                        .doOnNext(weatherData -> weatherData.setCity(city)))
+                .flatMap(this::save)
+                .map(weatherData -> weatherMetrics.record(Stage.CONVERT, () -> convertToResponse(weatherData))));
+    }
+    
+    /**
+     * Looks up several cities concurrently, at most {@code weather.batch.max-concurrency} at a time.
+     * Results keep the request order; a city that fails yields an error entry instead of failing the batch.
+     */
+    public Flux<WeatherResponse> getWeatherDataBatch(List<String> cityNames, boolean useRealApi) {
+        return Flux.fromIterable(cityNames)
+                .flatMapSequential(cityName -> getWeatherData(cityName, useRealApi)
+                        .onErrorResume(e -> Mono.just(WeatherResponse.error(cityName,
+                                "Error fetching weather data: " + e.getMessage()))),
+                        batchConcurrency);
+    }
+    
+    /**
+     * The canonical city; a city seen for the first time is registered on the persistence scheduler.
+     * Only the registration runs there: the lookup continues on the parallel scheduler, so the cache,
+     * the upstream call and the conversion never hold a persistence thread.
+     */
+    private Mono<City> resolveCity(String cityName) {
+        return Mono.defer(() -> {
+            City city = cityRegistry.find(cityName);
+            return city != null ? Mono.just(city)
+                    : Mono.fromCallable(() -> cityRegistry.resolve(cityName))
+                            .subscribeOn(persistenceScheduler)
+                            .publishOn(Schedulers.parallel());
+        });
+    }
+    
+    private Mono<WeatherData> getRealWeatherData(City city) {
+        hotCityRefresher.recordHit(city);
+        return weatherMetrics.time(Stage.UPSTREAM, Mono.defer(() -> openWeatherMapService.getCachedWeatherData(city)))
+                .doOnNext(weatherData -> hotCityRefresher.remember(city, weatherData))
+                // Cached readings are shared, so persist a fresh copy per request
+                .map(WeatherData::new)
+                // Fallback to the last known good reading, or mock data, when the API fails or returns nothing
+                .switchIfEmpty(Mono.defer(() -> getFallbackWeatherData(city, FallbackReason.API_ERROR)))
+                .onErrorResume(e -> {
+                    log.warn("OpenWeatherMap lookup for {} failed, using fallback data: {}", city.getName(), e.toString());
+                    return getFallbackWeatherData(city, e instanceof WebClientResponseException ?
+                            FallbackReason.API_ERROR : FallbackReason.EXCEPTION);
+                });
+    }
+    
+    /**
+     * A city the full registry did not take: looked up without cache, batching or last known
+     * good reading, and not stored.
+     */
+    private Mono<WeatherData> getUnregisteredWeatherData(City city, boolean useRealApi) {
+        weatherMetrics.unregistered();
+        if (!useRealApi) {
+            return getMockWeatherData(city, FallbackReason.MOCK_BY_REQUEST);
+        }
+        return weatherMetrics.time(Stage.UPSTREAM, Mono.defer(() -> openWeatherMapService.getWeatherData(city)))
+                .switchIfEmpty(Mono.defer(() -> getMockWeatherData(city, FallbackReason.API_ERROR)))
+                .onErrorResume(e -> getMockWeatherData(city, e instanceof WebClientResponseException ?
+                        FallbackReason.API_ERROR : FallbackReason.EXCEPTION));
+    }
+    
+    private Mono<WeatherData> getFallbackWeatherData(City city, FallbackReason reason) {
+        return hotCityRefresher.lastKnownGood(city)
+                .map(lastGood -> {
+                    weatherMetrics.stale(reason);
+                    WeatherData stale = new WeatherData(lastGood);
+                    stale.setStale(true);
+                    return stale;
+                })
+                .switchIfEmpty(Mono.defer(() -> getMockWeatherData(city, reason)));
+    }
+    
+    private Mono<WeatherData> getMockWeatherData(City city, FallbackReason reason) {
+        return weatherMetrics.time(Stage.MOCK, Mono.fromSupplier(() -> {
+            weatherMetrics.fallback(reason);
+            return mockWeatherService.getMockWeatherData(city.getName());
+        }));
+    }
+    
+    private Mono<WeatherData> save(WeatherData weatherData) {
+        if (weatherData.isStale() || weatherData.getCityId() == null) {
+            // Re-served readings are not new observations, and unregistered cities have no row to file them under
+            return Mono.just(weatherData);
         }
-        
-        return convertToResponse(weatherData);
+        // Rows are inserted in batches by the write-behind queue
+        return weatherMetrics.time(Stage.PERSIST, weatherDataWriter.write(weatherData)).thenReturn(weatherData);
     }
     
-    public List<WeatherData> getWeatherHistory(String cityName) {
-        return weatherDataRepository.findByCityNameOrderByTimestampDesc(cityName);
+    @Transactional(readOnly = true)
+    public WeatherPage<WeatherReading> getWeatherHistory(String cityName, String cursor, int limit) {
+        WeatherCursor before = WeatherCursor.decode(cursor);
+        int pageSize = clampPageSize(limit);
+        City city = cityRegistry.find(cityName);
+        if (city == null) {
+            return WeatherPage.empty();
+        }
+        return WeatherPage.of(weatherDataRepository.findHistoryPage(
+                city.getId(), before.timestamp(), before.id(), Limit.of(pageSize)), pageSize);
     }
     
-    public List<WeatherData> getRecentWeatherData(String cityName, int hours) {
+    /**
+     * Served from the {@link RecentWeatherBuffer}; only a page reaching further back than the
+     * buffer holds is continued from the database, after the last buffered reading.
+     */
+    public WeatherPage<WeatherReading> getRecentWeatherData(String cityName, int hours, String cursor, int limit) {
         LocalDateTime since = LocalDateTime.now().minusHours(hours);
-        return weatherDataRepository.findByCityNameAndTimestampAfter(cityName, since);
+        WeatherCursor before = WeatherCursor.decode(cursor);
+        int pageSize = clampPageSize(limit);
+        City city = cityRegistry.find(cityName);
+        if (city == null) {
+            return WeatherPage.empty();
+        }
+        RecentWeatherBuffer.Window window = recentWeatherBuffer.recent(city.getId(), since, before, pageSize);
+        if (window.complete()) {
+            return WeatherPage.of(window.items(), pageSize);
+        }
+        List<WeatherReading> items = new ArrayList<>(window.items());
+        WeatherCursor from = items.isEmpty() ? before : WeatherCursor.after(items.get(items.size() - 1));
+        items.addAll(weatherDataRepository.findRecentPage(
+                city.getId(), since, from.timestamp(), from.id(), Limit.of(pageSize - items.size())));
+        return WeatherPage.of(items, pageSize);
+    }
+    
+    @Transactional(readOnly = true)
+    public WeatherPage<? extends WeatherRollup> getRollupHistory(String cityName, WeatherResolution resolution,
+                                                                 String cursor, int limit) {
+        return getRollupPage(cityName, resolution, EPOCH, cursor, limit);
+    }
+    
+    @Transactional(readOnly = true)
+    public WeatherPage<? extends WeatherRollup> getRecentRollups(String cityName, int hours, WeatherResolution resolution,
+                                                                 String cursor, int limit) {
+        return getRollupPage(cityName, resolution, LocalDateTime.now().minusHours(hours), cursor, limit);
+    }
+    
+    /**
+     * Finest resolution still retained for the last {@code hours}: raw readings within
+     * {@code weather.retention.raw-window}, hourly rollups within the hourly window, daily beyond.
+     */
+    public WeatherResolution resolutionFor(int hours) {
+        Duration range = Duration.ofHours(hours);
+        if (range.compareTo(rawWindow) <= 0) {
+            return WeatherResolution.RAW;
+        }
+        return range.compareTo(hourlyWindow) <= 0 ? WeatherResolution.HOURLY : WeatherResolution.DAILY;
     }
     
     public Long getRequestCountBySource(String source) {
-        return weatherDataRepository.countBySource(source);
+        return weatherStats.getCountBySource(source);
     }
     
     public List<Object[]> getCityRequestCounts() {
-        return weatherDataRepository.findCityRequestCounts();
+        return weatherStats.getCityCounts();
+    }
+    
+    /**
+     * Stored buckets, preceded by the newest ones the retention job has not rolled up yet, which
+     * are aggregated from raw readings (and, for days, hourly buckets) on every request.
+     */
+    private WeatherPage<? extends WeatherRollup> getRollupPage(String cityName, WeatherResolution resolution,
+                                                               LocalDateTime since, String cursor, int limit) {
+        WeatherRollupRepository<? extends WeatherRollup> repository = switch (resolution) {
+            case HOURLY -> hourlyRollupRepository;
+            case DAILY -> dailyRollupRepository;
+            default -> throw new IllegalArgumentException("Not a rollup resolution: " + resolution);
+        };
+        WeatherCursor before = WeatherCursor.decode(cursor);
+        int pageSize = clampPageSize(limit);
+        City city = cityRegistry.find(cityName);
+        if (city == null) {
+            return WeatherPage.empty();
+        }
+        List<WeatherRollup> items = new ArrayList<>(pendingBuckets(city, resolution).stream()
+                .filter(bucket -> !bucket.getBucketStart().isBefore(since)
+                        && bucket.getBucketStart().isBefore(before.timestamp()))
+                .sorted(Comparator.comparing(WeatherRollup::getBucketStart).reversed())
+                .limit(pageSize)
+                .toList());
+        if (items.size() < pageSize) {
+            items.addAll(repository.findPage(city.getId(), since, before.timestamp(), Limit.of(pageSize - items.size())));
+        }
+        return WeatherPage.of(items, pageSize, WeatherCursor::after);
+    }
+    
+    /**
+     * The city's buckets after the newest stored one: hours from raw readings, and days from hourly
+     * buckets and raw readings.
+     */
+    private List<? extends WeatherRollup> pendingBuckets(City city, WeatherResolution resolution) {
+        LocalDateTime latestHour = hourlyRollupRepository.findLatestBucket();
+        LocalDateTime hourlyWatermark = latestHour != null ? latestHour.plusHours(1) : EPOCH;
+        List<WeatherHourlyRollup> hours = weatherDataRepository.findHourlyTotalsSince(city.getId(), hourlyWatermark)
+                .stream()
+                .map(row -> hourlyBucket(city, row))
+                .toList();
+        if (resolution == WeatherResolution.HOURLY) {
+            return hours;
+        }
+        LocalDateTime latestDay = dailyRollupRepository.findLatestBucket();
+        LocalDateTime dailyWatermark = latestDay != null ? latestDay.plusDays(1) : EPOCH;
+        List<WeatherHourlyRollup> dayHours = new ArrayList<>(hours);
+        if (hourlyWatermark.isAfter(dailyWatermark)) {
+            dayHours.addAll(hourlyRollupRepository.findPage(city.getId(), dailyWatermark, hourlyWatermark, Limit.unlimited()));
+        }
+        Map<LocalDateTime, WeatherDailyRollup> days = new HashMap<>();
+        for (WeatherHourlyRollup hour : dayHours) {
+            days.computeIfAbsent(hour.getBucketStart().truncatedTo(ChronoUnit.DAYS), day -> {
+                WeatherDailyRollup bucket = new WeatherDailyRollup();
+                bucket.setCityId(city.getId());
+                bucket.setCityName(city.getName());
+                bucket.setBucketStart(day);
+                return bucket;
+            }).include(hour);
+        }
+        return new ArrayList<>(days.values());
+    }
+    
+    private static WeatherHourlyRollup hourlyBucket(City city, Object[] row) {
+        WeatherHourlyRollup bucket = new WeatherHourlyRollup();
+        bucket.setCityId(city.getId());
+        bucket.setCityName(city.getName());
+        bucket.setBucketStart(((Timestamp) row[0]).toLocalDateTime());
+        bucket.setSampleCount(((Number) row[1]).longValue());
+        bucket.setMinTemperature(((Number) row[2]).doubleValue());
+        bucket.setMaxTemperature(((Number) row[3]).doubleValue());
+        bucket.setSumTemperature(((Number) row[4]).doubleValue());
+        bucket.setMinHumidity(((Number) row[5]).intValue());
+        bucket.setMaxHumidity(((Number) row[6]).intValue());
+        bucket.setSumHumidity(((Number) row[7]).longValue());
+        return bucket;
+    }
+    
+    private int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, maxPageSize));
     }
     
-    private WeatherResponse convertToResponse(WeatherData weatherData) {
-        return new WeatherResponse(
+    WeatherResponse convertToResponse(WeatherData weatherData) {
+        WeatherResponse response = new WeatherResponse(
                 weatherData.getCityName(),
                 weatherData.getTemperature(),
                 weatherData.getDescription(),
@@ -80,5 +346,8 @@ public class WeatherService {
                 weatherData.getWindSpeed(),
                 weatherData.getSource()
         );
+        response.setStale(weatherData.isStale());
+        response.setAgeSeconds(Duration.between(weatherData.getObservedAt(), response.getTimestamp()).toSeconds());
+        return response;
     }
 }
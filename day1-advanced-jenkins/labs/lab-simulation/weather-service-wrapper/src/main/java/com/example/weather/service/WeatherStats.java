@@ -0,0 +1,179 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherArchivedCountRepository;
+import com.example.weather.repository.WeatherDataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory request counters behind {@code /api/weather/stats}. Incremented as rows are
+ * persisted, rebuilt from the database at startup and optionally re-checked against it.
+ * Readings removed by retention are included through their archived counts. Cities are
+ * counted by id, so every spelling of a city adds to one counter.
+ * <p>
+ * A rebuild fills a fresh set of counters and publishes it with one swap, so readers never see
+ * it half loaded. Inserts go through {@link #persist(Runnable)}, which holds a barrier shared
+ * until their rows are recorded; a rebuild or check reads the database holding it exclusively,
+ * so each row is either in the counts it reads or recorded after them.
+ */
+@Component
+public class WeatherStats {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherStats.class);
+
+    // Shared by inserts until their rows are recorded, exclusive while the database is counted
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    private volatile Counters counters = new Counters();
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+    
+    @Autowired
+    private WeatherArchivedCountRepository archivedCountRepository;
+    
+    @Autowired
+    private WeatherVersions weatherVersions;
+    
+    @Autowired
+    private CityRegistry cityRegistry;
+
+    /**
+     * Runs an insert that records its rows once committed. A rebuild or check waits for it to
+     * finish, and it waits for them.
+     */
+    public void persist(Runnable insert) {
+        barrier.readLock().lock();
+        try {
+            insert.run();
+        } finally {
+            barrier.readLock().unlock();
+        }
+    }
+
+    public void record(WeatherData weatherData) {
+        counters.record(weatherData);
+    }
+
+    public long getCountBySource(String source) {
+        LongAdder count = counters.sourceCounts.get(source);
+        return count != null ? count.sum() : 0L;
+    }
+
+    public List<Object[]> getCityCounts() {
+        Map<Integer, LongAdder> cityCounts = counters.cityCounts;
+        List<Object[]> counts = new ArrayList<>(cityCounts.size());
+        cityCounts.forEach((cityId, count) -> {
+            City city = cityRegistry.get(cityId);
+            counts.add(new Object[]{city != null ? city.getName() : "#" + cityId, count.sum()});
+        });
+        counts.sort(Comparator.comparingLong((Object[] row) -> (Long) row[1]).reversed());
+        return counts;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        barrier.writeLock().lock();
+        try {
+            Counters rebuilt = new Counters();
+            Expected expected = expectedCounts();
+            load(rebuilt.sourceCounts, expected.sourceCounts());
+            load(rebuilt.cityCounts, expected.cityCounts());
+            counters = rebuilt;
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        weatherVersions.recordStatsRebuilt();
+        log.info("Weather stats rebuilt: {} sources, {} cities",
+                counters.sourceCounts.size(), counters.cityCounts.size());
+    }
+
+    /**
+     * Compares the counters with the database and rebuilds them on drift.
+     * Disabled unless {@code weather.stats.verify-cron} is set.
+     */
+    @Scheduled(cron = "${weather.stats.verify-cron:-}")
+    @Transactional(readOnly = true)
+    public void verify() {
+        boolean drifted;
+        barrier.writeLock().lock();
+        try {
+            Expected expected = expectedCounts();
+            drifted = !matches(counters.sourceCounts, expected.sourceCounts())
+                    || !matches(counters.cityCounts, expected.cityCounts());
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        if (drifted) {
+            log.warn("Weather stats drifted from the database, rebuilding");
+            rebuild();
+        }
+    }
+
+    /**
+     * Counts per source and per city from the database, read while holding the barrier
+     * exclusively so no insert is half done.
+     */
+    private Expected expectedCounts() {
+        Expected expected = new Expected(new HashMap<>(), new HashMap<>());
+        for (Object[] row : weatherDataRepository.findSourceAndCityCounts()) {
+            expected.add((String) row[0], (Integer) row[1], (Long) row[2]);
+        }
+        for (Object[] row : archivedCountRepository.findSourceAndCityCounts()) {
+            expected.add((String) row[0], (Integer) row[1], (Long) row[2]);
+        }
+        return expected;
+    }
+
+    private static <K> void load(Map<K, LongAdder> counters, Map<K, Long> expected) {
+        expected.forEach((key, value) -> counters.computeIfAbsent(key, k -> new LongAdder()).add(value));
+    }
+
+    private static <K> boolean matches(Map<K, LongAdder> counters, Map<K, Long> expected) {
+        if (counters.size() != expected.size()) {
+            return false;
+        }
+        for (Map.Entry<K, Long> entry : expected.entrySet()) {
+            LongAdder count = counters.get(entry.getKey());
+            if (count == null || count.sum() != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Expected(Map<String, Long> sourceCounts, Map<Integer, Long> cityCounts) {
+
+        void add(String source, Integer cityId, long count) {
+            sourceCounts.merge(source, count, Long::sum);
+            cityCounts.merge(cityId, count, Long::sum);
+        }
+    }
+
+    private static final class Counters {
+        private final Map<String, LongAdder> sourceCounts = new ConcurrentHashMap<>();
+        private final Map<Integer, LongAdder> cityCounts = new ConcurrentHashMap<>();
+
+        void record(WeatherData weatherData) {
+            sourceCounts.computeIfAbsent(weatherData.getSource(), key -> new LongAdder()).increment();
+            cityCounts.computeIfAbsent(weatherData.getCityId(), key -> new LongAdder()).increment();
+        }
+    }
+}
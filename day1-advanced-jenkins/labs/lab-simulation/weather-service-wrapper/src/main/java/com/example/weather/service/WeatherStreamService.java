@@ -0,0 +1,82 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live weather updates per city. Each city (and data source) has one producer, whatever the
+ * spelling, that looks the weather up every {@code weather.stream.interval} and multicasts the
+ * result to all subscribers, so the lookup and insert rate does not grow with the number of
+ * clients watching.
+ * The producer stops {@code weather.stream.grace-period} after its last subscriber leaves.
+ */
+@Service
+public class WeatherStreamService {
+
+    private final WeatherService weatherService;
+    private final CityRegistry cityRegistry;
+    private final Duration interval;
+    private final Duration gracePeriod;
+    private final Map<String, Flux<WeatherResponse>> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public WeatherStreamService(WeatherService weatherService,
+                                CityRegistry cityRegistry,
+                                @Value("${weather.stream.interval:5s}") Duration interval,
+                                @Value("${weather.stream.grace-period:10s}") Duration gracePeriod,
+                                MeterRegistry meterRegistry) {
+        this.weatherService = weatherService;
+        this.cityRegistry = cityRegistry;
+        this.interval = interval;
+        this.gracePeriod = gracePeriod;
+        Gauge.builder("weather.stream.cities", streams, Map::size)
+                .description("Cities with a running live update producer")
+                .register(meterRegistry);
+        Gauge.builder("weather.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Clients subscribed to live weather updates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Updates for the city, starting with the latest one. Each subscriber buffers at most one
+     * update: a client that reads slower than the interval skips to the newest reading.
+     */
+    public Flux<WeatherResponse> stream(String cityName, boolean useRealApi) {
+        String key = cityRegistry.keyOf(cityName) + (useRealApi ? "|api" : "|mock");
+        return streams.computeIfAbsent(key, k -> createStream(k, cityName.trim(), useRealApi))
+                .onBackpressureLatest()
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    int activeStreams() {
+        return streams.size();
+    }
+
+    private Flux<WeatherResponse> createStream(String key, String cityName, boolean useRealApi) {
+        AtomicReference<Flux<WeatherResponse>> self = new AtomicReference<>();
+        Flux<WeatherResponse> stream = Flux.interval(Duration.ZERO, interval)
+                // Skip ticks while a slow lookup is still running instead of queueing them
+                .onBackpressureDrop()
+                .concatMap(tick -> weatherService.getWeatherData(cityName, useRealApi)
+                        .onErrorResume(e -> Mono.just(WeatherResponse.error(cityName,
+                                "Error fetching weather data: " + e.getMessage()))), 1)
+                // A late subscriber may restart this producer after it was removed; only remove our own entry
+                .doFinally(signal -> streams.remove(key, self.get()))
+                .replay(1)
+                .refCount(1, gracePeriod);
+        self.set(stream);
+        return stream;
+    }
+}
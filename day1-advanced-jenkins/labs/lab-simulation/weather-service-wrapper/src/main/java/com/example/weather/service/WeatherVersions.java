@@ -0,0 +1,134 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Change versions behind the ETag and {@code Last-Modified} headers of the history, recent and
+ * stats endpoints. Every persisted reading moves its city and the global version forward; a
+ * retention run that rolled up or deleted anything moves the history of every city forward.
+ * Versions are bumped after the change is committed and read before a query, so a response
+ * never carries a version newer than its data.
+ * <p>
+ * Versions live in memory and restart from zero; the epoch (the startup time) keeps ETags
+ * from one run from matching those of another.
+ */
+@Component
+public class WeatherVersions {
+
+    /**
+     * A position in the change sequence and when it was reached.
+     */
+    public record Version(long sequence, long modifiedMillis) {
+    }
+
+    private final LongSupplier clock;
+    private final String epoch;
+    private final Version initial;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, Version> cities = new ConcurrentHashMap<>();
+    private final AtomicReference<Version> latest;
+    private final AtomicReference<Version> historyRewritten;
+
+    public WeatherVersions() {
+        this(System::currentTimeMillis);
+    }
+
+    WeatherVersions(LongSupplier clock) {
+        this.clock = clock;
+        long startedAt = clock.getAsLong();
+        this.epoch = Long.toString(startedAt, Character.MAX_RADIX);
+        this.initial = new Version(0, startedAt);
+        this.latest = new AtomicReference<>(initial);
+        this.historyRewritten = new AtomicReference<>(initial);
+    }
+
+    /**
+     * A reading for the city was persisted and counted in the stats.
+     */
+    public void recordWrite(int cityId) {
+        Version version = cities.compute(cityId, (key, previous) -> next());
+        latest.accumulateAndGet(version, WeatherVersions::newer);
+    }
+
+    /**
+     * The stats counters were reloaded from the database.
+     */
+    public void recordStatsRebuilt() {
+        latest.accumulateAndGet(next(), WeatherVersions::newer);
+    }
+
+    /**
+     * Retention rolled up or deleted readings, which can change any city's history.
+     */
+    public void recordHistoryRewritten() {
+        Version version = next();
+        historyRewritten.accumulateAndGet(version, WeatherVersions::newer);
+        latest.accumulateAndGet(version, WeatherVersions::newer);
+    }
+
+    /**
+     * Version of everything a city's history and recent responses are built from;
+     * {@code null} stands for a city that is not registered and has no readings.
+     */
+    public Version city(City city) {
+        Version written = city != null ? cities.getOrDefault(city.getId(), initial) : initial;
+        return newer(written, historyRewritten.get());
+    }
+
+    /**
+     * Version of the stats, which change with every write.
+     */
+    public Version stats() {
+        return latest.get();
+    }
+
+    /**
+     * Strong ETag for a version of a representation; {@code variant} tells apart the
+     * responses built from the same data, such as different pages or media types. The variant
+     * goes in as the first 128 bits of a SHA-256 digest, so distinct variants do not collide
+     * the way 32-bit hash codes can.
+     */
+    public String etag(Version version, Object... variant) {
+        return "\"" + epoch + "-" + Long.toString(version.sequence(), Character.MAX_RADIX)
+                + "-" + digest(variant) + "\"";
+    }
+
+    private static String digest(Object... variant) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (Object part : variant) {
+            // Length-prefixed, so ("ab", "c") and ("a", "bc") differ; null differs from "null"
+            byte[] bytes = part != null ? part.toString().getBytes(StandardCharsets.UTF_8) : null;
+            sha256.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes != null ? bytes.length : -1).array());
+            if (bytes != null) {
+                sha256.update(bytes);
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest(), 0, 16);
+    }
+
+    private Version next() {
+        return new Version(sequence.incrementAndGet(), clock.getAsLong());
+    }
+
+    private static Version newer(Version a, Version b) {
+        return a.sequence() >= b.sequence() ? a : b;
+    }
+}
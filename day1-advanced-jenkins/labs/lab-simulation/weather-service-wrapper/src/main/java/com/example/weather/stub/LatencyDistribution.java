@@ -0,0 +1,63 @@
+package com.example.weather.stub;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Response delay of the OpenWeatherMap stub.
+ *
+ * <ul>
+ *   <li>{@code fixed}: always {@code median}</li>
+ *   <li>{@code uniform}: evenly spread between {@code min} and {@code max}</li>
+ *   <li>{@code lognormal}: long-tailed like real network latency, with the given {@code median} and {@code p99}</li>
+ * </ul>
+ */
+public final class LatencyDistribution {
+
+    private static final double Z_99 = 2.3263478740408408;
+
+    public enum Type {
+        FIXED, UNIFORM, LOGNORMAL;
+
+        public static Type parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Type type;
+    private final long minNanos;
+    private final long maxNanos;
+    private final double mu;
+    private final double sigma;
+
+    public LatencyDistribution(Type type, Duration min, Duration max, Duration median, Duration p99) {
+        if (max.compareTo(min) < 0 || p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("Latency bounds out of order: min=" + min + ", max=" + max
+                    + ", median=" + median + ", p99=" + p99);
+        }
+        this.type = type;
+        this.minNanos = type == Type.FIXED ? median.toNanos() : min.toNanos();
+        this.maxNanos = max.toNanos();
+        this.mu = Math.log(Math.max(1, median.toNanos()));
+        this.sigma = (Math.log(Math.max(1, p99.toNanos())) - mu) / Z_99;
+    }
+
+    public Duration sample(RandomGenerator random) {
+        return Duration.ofNanos(switch (type) {
+            case FIXED -> minNanos;
+            case UNIFORM -> minNanos == maxNanos ? minNanos : random.nextLong(minNanos, maxNanos + 1);
+            case LOGNORMAL -> (long) Math.exp(mu + sigma * random.nextGaussian());
+        });
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case FIXED -> "fixed " + Duration.ofNanos(minNanos).toMillis() + "ms";
+            case UNIFORM -> "uniform " + Duration.ofNanos(minNanos).toMillis() + "-" + Duration.ofNanos(maxNanos).toMillis() + "ms";
+            case LOGNORMAL -> "lognormal median " + Duration.ofNanos((long) Math.exp(mu)).toMillis() + "ms, p99 "
+                    + Duration.ofNanos((long) Math.exp(mu + sigma * Z_99)).toMillis() + "ms";
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.weather.stub;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Local stand-in for the OpenWeatherMap current weather endpoints ({@code GET /data/2.5/weather?q=}
+ * and {@code GET /data/2.5/group?id=}), for load tests without network access. Each city gets a
+ * stable id derived from its name; the group endpoint answers for the ids it has handed out.
+ * Each response is delayed by a sample of the {@link LatencyDistribution}; a share of requests
+ * fail with a 500 ({@code errorRate}) or never get an answer ({@code timeoutRate}), so the
+ * client's timeout, retry and circuit breaker paths are exercised too. Request number {@code n}
+ * always draws the same delay and outcome for a given seed, so runs are repeatable. Delays are
+ * timers on the event loop: no thread is held while a response waits.
+ */
+public class OpenWeatherMapStub implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenWeatherMapStub.class);
+
+    private static final String[] DESCRIPTIONS = {"clear sky", "few clouds", "broken clouds", "light rain", "mist"};
+
+    private final String host;
+    private final int port;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double timeoutRate;
+    private final long seed;
+    private final AtomicLong requests = new AtomicLong();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder groupRequests = new LongAdder();
+    private final Map<Long, String> cityNames = new ConcurrentHashMap<>();
+    private volatile DisposableServer server;
+
+    public OpenWeatherMapStub(String host, int port, LatencyDistribution latency,
+                              double errorRate, double timeoutRate, long seed) {
+        this.host = host;
+        this.port = port;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+        this.seed = seed;
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+                .host(host)
+                .port(port)
+                .route(routes -> routes
+                        .get("/data/2.5/weather", this::currentWeather)
+                        .get("/data/2.5/group", this::groupWeather))
+                .bindNow();
+        log.info("OpenWeatherMap stub listening on {}:{} (latency {}, error rate {}, timeout rate {})",
+                host, server.port(), latency, errorRate, timeoutRate);
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer running = server;
+        if (running != null) {
+            running.disposeNow();
+            server = null;
+            log.info("OpenWeatherMap stub served {} request(s), {} of them group calls: {} error(s), {} timeout(s)",
+                    requests.get(), groupRequests.sum(), errors.sum(), timeouts.sum());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Starts before the web server and stops after it, so no request finds the upstream gone.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    public int port() {
+        return server != null ? server.port() : port;
+    }
+
+    /**
+     * Requests served so far, group calls included.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    private Publisher<Void> currentWeather(HttpServerRequest request, HttpServerResponse response) {
+        SplittableRandom random = new SplittableRandom(seed + requests.getAndIncrement() * 0x9E3779B97F4A7C15L);
+        response.header(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8");
+        List<String> q = new QueryStringDecoder(request.uri()).parameters().get("q");
+        if (q == null || q.get(0).isBlank()) {
+            return response.status(HttpResponseStatus.BAD_REQUEST)
+                    .sendString(Mono.just("{\"cod\":\"400\",\"message\":\"Nothing to geocode\"}"));
+        }
+        String city = q.get(0);
+        long id = cityId(city);
+        cityNames.putIfAbsent(id, city);
+        return respond(response, random, () -> currentWeatherJson(id, city, random));
+    }
+
+    private Publisher<Void> groupWeather(HttpServerRequest request, HttpServerResponse response) {
+        SplittableRandom random = new SplittableRandom(seed + requests.getAndIncrement() * 0x9E3779B97F4A7C15L);
+        groupRequests.increment();
+        response.header(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=utf-8");
+        List<String> ids = new QueryStringDecoder(request.uri()).parameters().get("id");
+        if (ids == null || ids.get(0).isBlank()) {
+            return response.status(HttpResponseStatus.BAD_REQUEST)
+                    .sendString(Mono.just("{\"cod\":\"400\",\"message\":\"Invalid ID\"}"));
+        }
+        return respond(response, random, () -> {
+            StringBuilder list = new StringBuilder();
+            int count = 0;
+            for (String idParam : ids.get(0).split(",")) {
+                long id = Long.parseLong(idParam.trim());
+                String city = cityNames.get(id);
+                if (city != null) {
+                    list.append(count++ > 0 ? "," : "").append(currentWeatherJson(id, city, random));
+                }
+            }
+            return "{\"cnt\":" + count + ",\"list\":[" + list + "]}";
+        });
+    }
+
+    private Publisher<Void> respond(HttpServerResponse response, SplittableRandom random, Supplier<String> body) {
+        if (random.nextDouble() < timeoutRate) {
+            timeouts.increment();
+            // Ends when the client gives up and closes the connection
+            return Mono.never();
+        }
+        boolean error = random.nextDouble() < errorRate;
+        Duration delay = latency.sample(random);
+        if (error) {
+            errors.increment();
+            return Mono.delay(delay).then(response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR)
+                    .sendString(Mono.just("{\"cod\":500,\"message\":\"Internal error\"}")).then());
+        }
+        String payload = body.get();
+        return Mono.delay(delay).then(response.sendString(Mono.just(payload)).then());
+    }
+
+    /**
+     * A stable positive id per city, like OpenWeatherMap's; spellings differing only in case and
+     * surrounding whitespace share it.
+     */
+    private static long cityId(String city) {
+        return 1_000_000 + Math.floorMod(city.trim().toLowerCase(Locale.ROOT).hashCode(), 9_000_000);
+    }
+
+    /**
+     * A payload shaped like OpenWeatherMap's: the city sets the base climate, the request's
+     * random draw varies it.
+     */
+    private static String currentWeatherJson(long id, String city, SplittableRandom random) {
+        int climate = Math.floorMod(city.trim().toLowerCase(Locale.ROOT).hashCode(), 30);
+        return String.format(Locale.ROOT,
+                "{\"coord\":{\"lon\":0.0,\"lat\":0.0},\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"%s\"}],"
+                        + "\"main\":{\"temp\":%.2f,\"pressure\":%d,\"humidity\":%d},\"visibility\":10000,"
+                        + "\"wind\":{\"speed\":%.1f,\"deg\":%d},\"dt\":%d,\"id\":%d,\"name\":\"%s\",\"cod\":200}",
+                DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)],
+                climate - 5 + random.nextDouble() * 4,
+                1000 + random.nextInt(30),
+                30 + random.nextInt(60),
+                random.nextDouble() * 15,
+                random.nextInt(360),
+                System.currentTimeMillis() / 1000,
+                id,
+                new String(JsonStringEncoder.getInstance().quoteAsString(city)));
+    }
+}
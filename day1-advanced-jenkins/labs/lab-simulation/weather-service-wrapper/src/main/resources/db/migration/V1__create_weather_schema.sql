@@ -0,0 +1,56 @@
+-- Raw readings, one row per request
+CREATE SEQUENCE weather_data_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE weather_data (
+    id          BIGINT           NOT NULL PRIMARY KEY,
+    city_name   VARCHAR(255)     NOT NULL,
+    temperature DOUBLE PRECISION NOT NULL,
+    description VARCHAR(255)     NOT NULL,
+    humidity    INTEGER          NOT NULL,
+    pressure    DOUBLE PRECISION NOT NULL,
+    wind_speed  DOUBLE PRECISION NOT NULL,
+    timestamp   TIMESTAMP(6)     NOT NULL,
+    source      VARCHAR(255)     NOT NULL
+);
+
+CREATE INDEX idx_weather_data_city_timestamp ON weather_data (city_name, timestamp, id);
+CREATE INDEX idx_weather_data_timestamp ON weather_data (timestamp);
+
+-- Per-city aggregates written by the retention job
+CREATE TABLE weather_rollup_hourly (
+    city_name       VARCHAR(255)     NOT NULL,
+    bucket_start    TIMESTAMP(6)     NOT NULL,
+    sample_count    BIGINT           NOT NULL,
+    min_temperature DOUBLE PRECISION NOT NULL,
+    max_temperature DOUBLE PRECISION NOT NULL,
+    sum_temperature DOUBLE PRECISION NOT NULL,
+    min_humidity    INTEGER          NOT NULL,
+    max_humidity    INTEGER          NOT NULL,
+    sum_humidity    BIGINT           NOT NULL,
+    PRIMARY KEY (city_name, bucket_start)
+);
+
+CREATE INDEX idx_weather_rollup_hourly_bucket ON weather_rollup_hourly (bucket_start);
+
+CREATE TABLE weather_rollup_daily (
+    city_name       VARCHAR(255)     NOT NULL,
+    bucket_start    TIMESTAMP(6)     NOT NULL,
+    sample_count    BIGINT           NOT NULL,
+    min_temperature DOUBLE PRECISION NOT NULL,
+    max_temperature DOUBLE PRECISION NOT NULL,
+    sum_temperature DOUBLE PRECISION NOT NULL,
+    min_humidity    INTEGER          NOT NULL,
+    max_humidity    INTEGER          NOT NULL,
+    sum_humidity    BIGINT           NOT NULL,
+    PRIMARY KEY (city_name, bucket_start)
+);
+
+CREATE INDEX idx_weather_rollup_daily_bucket ON weather_rollup_daily (bucket_start);
+
+-- Request counts of raw readings removed by retention
+CREATE TABLE weather_archived_count (
+    city_name     VARCHAR(255) NOT NULL,
+    source        VARCHAR(255) NOT NULL,
+    request_count BIGINT       NOT NULL,
+    PRIMARY KEY (city_name, source)
+);
@@ -0,0 +1,4 @@
+-- Retention and export page through all readings ordered by (timestamp, id);
+-- with the id in the index those scans are index-sorted instead of sorting the remaining range
+DROP INDEX idx_weather_data_timestamp;
+CREATE INDEX idx_weather_data_timestamp_id ON weather_data (timestamp, id);
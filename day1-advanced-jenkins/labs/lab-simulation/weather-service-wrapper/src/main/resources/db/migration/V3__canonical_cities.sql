@@ -0,0 +1,117 @@
+-- Canonical cities: every spelling of a city resolves to one id, through its normalized key
+-- (trimmed, inner whitespace collapsed, lower case) or an alias
+CREATE TABLE city (
+    id       INTEGER      GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name     VARCHAR(255) NOT NULL,
+    city_key VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE city_alias (
+    alias_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    city_id   INTEGER      NOT NULL REFERENCES city (id)
+);
+
+INSERT INTO city (name, city_key) VALUES
+    ('Bucharest', 'bucharest'),
+    ('London', 'london'),
+    ('Paris', 'paris'),
+    ('New York', 'new york'),
+    ('Tokyo', 'tokyo');
+
+INSERT INTO city_alias (alias_key, city_id) SELECT 'bucuresti', id FROM city WHERE city_key = 'bucharest';
+INSERT INTO city_alias (alias_key, city_id) SELECT 'bucurești', id FROM city WHERE city_key = 'bucharest';
+INSERT INTO city_alias (alias_key, city_id) SELECT 'new york city', id FROM city WHERE city_key = 'new york';
+INSERT INTO city_alias (alias_key, city_id) SELECT 'nyc', id FROM city WHERE city_key = 'new york';
+
+-- Every spelling stored so far, with the city it resolves to; unknown cities are registered
+-- under their most requested spelling
+CREATE TABLE city_spelling (
+    spelling VARCHAR(255) NOT NULL PRIMARY KEY,
+    city_key VARCHAR(255) NOT NULL,
+    requests BIGINT       NOT NULL,
+    city_id  INTEGER
+);
+
+INSERT INTO city_spelling (spelling, city_key, requests)
+SELECT city_name, LOWER(TRIM(REGEXP_REPLACE(city_name, '\s+', ' '))), SUM(requests)
+FROM (SELECT city_name, COUNT(*) AS requests FROM weather_data GROUP BY city_name
+      UNION ALL SELECT city_name, SUM(request_count) FROM weather_archived_count GROUP BY city_name
+      UNION ALL SELECT city_name, 0 FROM weather_rollup_hourly
+      UNION ALL SELECT city_name, 0 FROM weather_rollup_daily) spellings
+GROUP BY city_name;
+
+UPDATE city_spelling s SET city_key = (SELECT c.city_key FROM city_alias a JOIN city c ON c.id = a.city_id
+                                       WHERE a.alias_key = s.city_key)
+WHERE s.city_key IN (SELECT alias_key FROM city_alias);
+
+INSERT INTO city (name, city_key)
+SELECT TRIM(REGEXP_REPLACE(s.spelling, '\s+', ' ')), s.city_key FROM city_spelling s
+WHERE s.city_key NOT IN (SELECT city_key FROM city)
+  AND s.spelling = (SELECT MIN(t.spelling) FROM city_spelling t
+                    WHERE t.city_key = s.city_key
+                      AND t.requests = (SELECT MAX(u.requests) FROM city_spelling u WHERE u.city_key = s.city_key));
+
+UPDATE city_spelling s SET city_id = (SELECT c.id FROM city c WHERE c.city_key = s.city_key);
+
+-- Raw readings are looked up by city id; the name column keeps the canonical name
+ALTER TABLE weather_data ADD COLUMN city_id INTEGER;
+
+UPDATE weather_data w SET
+    city_id = (SELECT s.city_id FROM city_spelling s WHERE s.spelling = w.city_name),
+    city_name = (SELECT c.name FROM city_spelling s JOIN city c ON c.id = s.city_id WHERE s.spelling = w.city_name);
+
+ALTER TABLE weather_data ALTER COLUMN city_id SET NOT NULL;
+
+DROP INDEX idx_weather_data_city_timestamp;
+CREATE INDEX idx_weather_data_city_timestamp ON weather_data (city_id, timestamp, id);
+
+-- Aggregates of spellings of the same city are merged under its canonical name
+CREATE TABLE weather_rollup_hourly_merged AS
+SELECT c.name AS city_name, r.bucket_start, SUM(r.sample_count) AS sample_count,
+       MIN(r.min_temperature) AS min_temperature, MAX(r.max_temperature) AS max_temperature,
+       SUM(r.sum_temperature) AS sum_temperature, MIN(r.min_humidity) AS min_humidity,
+       MAX(r.max_humidity) AS max_humidity, SUM(r.sum_humidity) AS sum_humidity
+FROM weather_rollup_hourly r
+JOIN city_spelling s ON s.spelling = r.city_name
+JOIN city c ON c.id = s.city_id
+GROUP BY c.name, r.bucket_start;
+
+DELETE FROM weather_rollup_hourly;
+INSERT INTO weather_rollup_hourly (city_name, bucket_start, sample_count, min_temperature, max_temperature,
+                                   sum_temperature, min_humidity, max_humidity, sum_humidity)
+SELECT city_name, bucket_start, sample_count, min_temperature, max_temperature,
+       sum_temperature, min_humidity, max_humidity, sum_humidity
+FROM weather_rollup_hourly_merged;
+DROP TABLE weather_rollup_hourly_merged;
+
+CREATE TABLE weather_rollup_daily_merged AS
+SELECT c.name AS city_name, r.bucket_start, SUM(r.sample_count) AS sample_count,
+       MIN(r.min_temperature) AS min_temperature, MAX(r.max_temperature) AS max_temperature,
+       SUM(r.sum_temperature) AS sum_temperature, MIN(r.min_humidity) AS min_humidity,
+       MAX(r.max_humidity) AS max_humidity, SUM(r.sum_humidity) AS sum_humidity
+FROM weather_rollup_daily r
+JOIN city_spelling s ON s.spelling = r.city_name
+JOIN city c ON c.id = s.city_id
+GROUP BY c.name, r.bucket_start;
+
+DELETE FROM weather_rollup_daily;
+INSERT INTO weather_rollup_daily (city_name, bucket_start, sample_count, min_temperature, max_temperature,
+                                  sum_temperature, min_humidity, max_humidity, sum_humidity)
+SELECT city_name, bucket_start, sample_count, min_temperature, max_temperature,
+       sum_temperature, min_humidity, max_humidity, sum_humidity
+FROM weather_rollup_daily_merged;
+DROP TABLE weather_rollup_daily_merged;
+
+CREATE TABLE weather_archived_count_merged AS
+SELECT c.name AS city_name, a.source, SUM(a.request_count) AS request_count
+FROM weather_archived_count a
+JOIN city_spelling s ON s.spelling = a.city_name
+JOIN city c ON c.id = s.city_id
+GROUP BY c.name, a.source;
+
+DELETE FROM weather_archived_count;
+INSERT INTO weather_archived_count (city_name, source, request_count)
+SELECT city_name, source, request_count FROM weather_archived_count_merged;
+DROP TABLE weather_archived_count_merged;
+
+DROP TABLE city_spelling;
@@ -0,0 +1,19 @@
+-- Rollups and archived counts are keyed by city id, like the raw readings; the name column
+-- keeps the canonical name. Since V3 every stored name is the canonical name of its city.
+ALTER TABLE weather_rollup_hourly ADD COLUMN city_id INTEGER;
+UPDATE weather_rollup_hourly r SET city_id = (SELECT c.id FROM city c WHERE c.name = r.city_name);
+ALTER TABLE weather_rollup_hourly ALTER COLUMN city_id SET NOT NULL;
+ALTER TABLE weather_rollup_hourly DROP PRIMARY KEY;
+ALTER TABLE weather_rollup_hourly ADD PRIMARY KEY (city_id, bucket_start);
+
+ALTER TABLE weather_rollup_daily ADD COLUMN city_id INTEGER;
+UPDATE weather_rollup_daily r SET city_id = (SELECT c.id FROM city c WHERE c.name = r.city_name);
+ALTER TABLE weather_rollup_daily ALTER COLUMN city_id SET NOT NULL;
+ALTER TABLE weather_rollup_daily DROP PRIMARY KEY;
+ALTER TABLE weather_rollup_daily ADD PRIMARY KEY (city_id, bucket_start);
+
+ALTER TABLE weather_archived_count ADD COLUMN city_id INTEGER;
+UPDATE weather_archived_count a SET city_id = (SELECT c.id FROM city c WHERE c.name = a.city_name);
+ALTER TABLE weather_archived_count ALTER COLUMN city_id SET NOT NULL;
+ALTER TABLE weather_archived_count DROP PRIMARY KEY;
+ALTER TABLE weather_archived_count ADD PRIMARY KEY (city_id, source);
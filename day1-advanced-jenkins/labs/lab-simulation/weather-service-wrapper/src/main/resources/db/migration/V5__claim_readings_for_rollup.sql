@@ -0,0 +1,8 @@
+-- Each rollup transaction claims the raw readings it aggregates, so a reading stored after its
+-- hour was rolled up (a late write-behind flush) is still found and added to the rollups
+ALTER TABLE weather_data ADD COLUMN rollup_run BIGINT;
+CREATE INDEX idx_weather_data_rollup_run_timestamp ON weather_data (rollup_run, timestamp);
+
+-- Readings before the hourly watermark are already covered by the existing rollups
+UPDATE weather_data SET rollup_run = 0
+WHERE timestamp < (SELECT DATEADD('HOUR', 1, MAX(bucket_start)) FROM weather_rollup_hourly);
@@ -0,0 +1,118 @@
+package com.example.weather.benchmark;
+
+import com.example.weather.WeatherServiceApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@code spring.threads.virtual.enabled} off and on. Each mode starts the application
+ * with the {@code stub-upstream} profile and sends {@code GET /api/weather} requests for cities
+ * it has not seen, {@link #CONCURRENCY} at a time, so Tomcat's request executor is part of what
+ * is measured. Every request calls the slow upstream and registers its city on the persistence
+ * scheduler, and its reading goes through the write-behind queue.
+ * Run with {@code mvn test -Pbenchmark -Dtest=ThreadModeBenchmarkTest}; add
+ * {@code -DargLine=-Djdk.tracePinnedThreads=full} to list virtual threads pinned to their carrier.
+ */
+@Tag("benchmark")
+class ThreadModeBenchmarkTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int CONCURRENCY = 500;
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(200);
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws IOException {
+        long platformNanos = run(false);
+        long virtualNanos = run(true);
+
+        report("platform", platformNanos);
+        report("virtual", virtualNanos);
+        System.out.printf("virtual / platform time: %.2f%n", (double) virtualNanos / platformNanos);
+    }
+
+    /**
+     * Starts the application in one thread mode, warms it up and times {@link #REQUESTS} lookups.
+     */
+    private static long run(boolean virtualThreads) throws IOException {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext application = new SpringApplicationBuilder(WeatherServiceApplication.class)
+                .profiles("stub-upstream")
+                // Command-line arguments, so they take precedence over the profile's properties
+                .run("--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:thread-mode-" + mode,
+                        "--server.port=0",
+                        "--weather.stub.port=" + freePort(),
+                        "--weather.stub.latency.distribution=fixed",
+                        "--weather.stub.latency.median=" + UPSTREAM_LATENCY.toMillis() + "ms",
+                        "--weather.stub.latency.p99=" + UPSTREAM_LATENCY.toMillis() + "ms",
+                        "--weather.stub.error-rate=0",
+                        "--weather.stub.timeout-rate=0",
+                        // Every request in flight is let through, by the admission filter and to the upstream
+                        "--weather.admission.enabled=false",
+                        "--resilience4j.bulkhead.instances.openWeatherMap.max-concurrent-calls=" + CONCURRENCY,
+                        "--logging.level.org.springframework.web=INFO")) {
+            Scheduler persistenceScheduler = application.getBean("persistenceScheduler", Scheduler.class);
+            assertEquals(virtualThreads, Mono.fromCallable(() -> Thread.currentThread().isVirtual())
+                    .subscribeOn(persistenceScheduler)
+                    .block());
+
+            String target = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+            HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            // Warm up JIT, connection pools and the upstream client before measuring
+            lookUp(httpClient, target, mode + "-warmup-");
+            long start = System.nanoTime();
+            List<HttpResponse<String>> responses = lookUp(httpClient, target, mode + "-");
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(REQUESTS, responses.size());
+            assertTrue(responses.stream().allMatch(response -> response.statusCode() == 200
+                            && response.body().contains("\"source\":\"api\"")),
+                    "every lookup should be answered by the upstream");
+            return elapsed;
+        }
+    }
+
+    private static List<HttpResponse<String>> lookUp(HttpClient httpClient, String target, String cityPrefix) {
+        Semaphore permits = new Semaphore(CONCURRENCY);
+        List<CompletableFuture<HttpResponse<String>>> inFlight = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            permits.acquireUninterruptibly();
+            URI uri = URI.create(target + "/api/weather?city=ThreadCity" + cityPrefix + i + "&useRealApi=true");
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(1)).build();
+            inFlight.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> permits.release()));
+        }
+        return inFlight.stream().map(CompletableFuture::join).toList();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report(String mode, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-10s %,d lookups in %.2f s -> %,.0f lookups/s%n", mode, REQUESTS, seconds, REQUESTS / seconds);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.weather.benchmark;
+
+import com.example.weather.dto.OpenWeatherMapResponse;
+import com.example.weather.model.WeatherData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures bytes allocated per upstream response when decoding into a {@code Map} tree
+ * versus the typed {@link OpenWeatherMapResponse}. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class UpstreamDecodingBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+
+    // Full current-weather payload as returned by OpenWeatherMap
+    private static final byte[] RESPONSE = """
+            {"coord":{"lon":26.1063,"lat":44.4323},
+             "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04d"}],
+             "base":"stations",
+             "main":{"temp":22.54,"feels_like":22.31,"temp_min":21.08,"temp_max":23.96,
+                     "pressure":1013,"humidity":65,"sea_level":1013,"grnd_level":1001},
+             "visibility":10000,"wind":{"speed":3.6,"deg":120,"gust":5.2},
+             "clouds":{"all":75},"dt":1726502400,
+             "sys":{"type":2,"id":2032494,"country":"RO","sunrise":1726458310,"sunset":1726503577},
+             "timezone":10800,"id":683506,"name":"Bucharest","cod":200}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareMapTreeAndTypedDecoding() throws IOException {
+        long mapBytes = measure(this::decodeMapTree);
+        long typedBytes = measure(this::decodeTyped);
+
+        System.out.printf("Map tree decoding   %,d bytes/response%n", mapBytes);
+        System.out.printf("Typed DTO decoding  %,d bytes/response (%.0f%% less)%n",
+                typedBytes, 100.0 * (mapBytes - typedBytes) / mapBytes);
+        assertTrue(typedBytes < mapBytes, "typed decoding should allocate less than the map tree");
+    }
+
+    private long measure(Decoder decoder) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            decoder.decode();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            decoder.decode();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / MEASURED_ITERATIONS;
+    }
+
+    @SuppressWarnings("unchecked")
+    private WeatherData decodeMapTree() throws IOException {
+        Map<String, Object> response = objectMapper.readValue(RESPONSE, Map.class);
+        Map<String, Object> main = (Map<String, Object>) response.get("main");
+        Map<String, Object> weather = (Map<String, Object>) ((List<?>) response.get("weather")).get(0);
+        Map<String, Object> wind = (Map<String, Object>) response.get("wind");
+        return new WeatherData((String) response.get("name"),
+                ((Number) main.get("temp")).doubleValue(),
+                (String) weather.get("description"),
+                ((Number) main.get("humidity")).intValue(),
+                ((Number) main.get("pressure")).doubleValue(),
+                ((Number) wind.get("speed")).doubleValue(),
+                "api");
+    }
+
+    private WeatherData decodeTyped() throws IOException {
+        OpenWeatherMapResponse response = objectMapper.readValue(RESPONSE, OpenWeatherMapResponse.class);
+        return new WeatherData(response.name(),
+                response.main().temp(),
+                response.weather().get(0).description(),
+                response.main().humidity(),
+                response.main().pressure(),
+                response.wind().speed(),
+                "api");
+    }
+
+    @FunctionalInterface
+    private interface Decoder {
+        WeatherData decode() throws IOException;
+    }
+}
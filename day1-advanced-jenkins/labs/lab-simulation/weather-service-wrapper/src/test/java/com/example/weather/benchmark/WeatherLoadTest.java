@@ -0,0 +1,222 @@
+package com.example.weather.benchmark;
+
+import com.example.weather.WeatherServiceApplication;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Open-loop load test of {@code GET /api/weather} in both {@code useRealApi} modes. Each step
+ * sends requests at a fixed rate, whether or not earlier ones have returned. Latency is measured
+ * from the moment a request was due, so a stalled server shows up in the percentiles instead
+ * of slowing the generator down. Cities and their order come from a seeded generator, so
+ * every run sends the same requests.
+ * <p>
+ * By default the application is started here with the {@code stub-upstream} profile, so no
+ * network access is needed; set {@code -Dload.target=http://host:8080} to drive a running
+ * instance instead. Reports go to {@code target/load-reports}. Run with
+ * {@code mvn test -Pbenchmark -Dtest=WeatherLoadTest}, tuned with
+ * {@code -Dload.modes=mock,api -Dload.rates=50,100,200 -Dload.duration=20s -Dload.warmup=5s
+ * -Dload.cities=2000 -Dload.seed=42}.
+ */
+@Tag("benchmark")
+class WeatherLoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int TIMEOUT_STATUS = -1;
+    private static final int IO_ERROR_STATUS = -2;
+
+    private static final List<String> MODES = List.of(System.getProperty("load.modes", "mock,api").split(","));
+    private static final int[] RATES = Arrays.stream(System.getProperty("load.rates", "50,100,200").split(","))
+            .mapToInt(rate -> Integer.parseInt(rate.trim())).toArray();
+    private static final Duration DURATION = DurationStyle.detectAndParse(System.getProperty("load.duration", "20s"));
+    private static final Duration WARMUP = DurationStyle.detectAndParse(System.getProperty("load.warmup", "5s"));
+    private static final int CITIES = Integer.getInteger("load.cities", 2000);
+    private static final long SEED = Long.getLong("load.seed", 42L);
+
+    private static ConfigurableApplicationContext application;
+    private static String target;
+    private static HttpClient httpClient;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        target = System.getProperty("load.target");
+        if (target == null || target.isBlank()) {
+            application = new SpringApplicationBuilder(WeatherServiceApplication.class)
+                    .profiles("stub-upstream")
+                    // Command-line arguments, so they take precedence over the profile's properties
+                    .run("--server.port=0",
+                            "--weather.stub.port=" + freePort(),
+                            "--weather.mock.seed=" + SEED,
+                            "--weather.stub.seed=" + SEED,
+                            // The generator is a single client; leave only the global concurrency limit on
+                            "--weather.admission.rate-limit.rate=1000000",
+                            "--weather.admission.rate-limit.burst=1000000",
+                            "--logging.level.org.springframework.web=INFO",
+                            "--logging.level.org.springframework.cache=INFO");
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            target = "http://localhost:" + port;
+        }
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (application != null) {
+            application.close();
+        }
+    }
+
+    @Test
+    void runLoadSteps() throws IOException {
+        List<StepResult> results = new ArrayList<>();
+        for (String mode : MODES) {
+            boolean useRealApi = mode.trim().equals("api");
+            // Unrecorded warm-up: JIT, connection pools, caches
+            runStep(useRealApi, RATES[0], WARMUP, SEED - 1);
+            for (int rate : RATES) {
+                StepResult result = runStep(useRealApi, rate, DURATION, SEED);
+                System.out.println(result.toRow());
+                results.add(result);
+            }
+        }
+        Path report = writeReport(results);
+        System.out.println("Load report: " + report.toAbsolutePath());
+
+        assertTrue(results.stream().allMatch(result -> result.histogram.getTotalCount() > 0),
+                "every step should have successful requests");
+    }
+
+    private StepResult runStep(boolean useRealApi, int rate, Duration duration, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder fallbacks = new LongAdder();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = duration.toNanos() / intervalNanos;
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>((int) requests);
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            URI uri = URI.create(target + "/api/weather?city=LoadCity" + random.nextInt(CITIES)
+                    + "&useRealApi=" + useRealApi);
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).build();
+            inFlight.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, failure) -> {
+                        int status = failure == null ? response.statusCode()
+                                : failure.getCause() instanceof HttpTimeoutException ? TIMEOUT_STATUS : IO_ERROR_STATUS;
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                        if (status >= 200 && status < 300) {
+                            if (useRealApi && response.body().contains("\"source\":\"mock\"")) {
+                                // Upstream failed or the circuit was open: answered with mock data
+                                fallbacks.increment();
+                            }
+                            synchronized (histogram) {
+                                histogram.recordValue(Math.min(System.nanoTime() - due, histogram.getHighestTrackableValue()));
+                            }
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        long elapsedNanos = System.nanoTime() - start;
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        return new StepResult(useRealApi ? "api" : "mock", rate, requests, elapsedNanos, histogram, statusCounts,
+                fallbacks.sum());
+    }
+
+    private Path writeReport(List<StepResult> results) throws IOException {
+        Path directory = Path.of("target", "load-reports");
+        Files.createDirectories(directory);
+        String name = "load-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        StringBuilder markdown = new StringBuilder("# Weather load test\n\n")
+                .append("- Target: ").append(target).append(application != null ? " (embedded, stub-upstream profile)" : "").append('\n')
+                .append("- Steps: ").append(DURATION.toSeconds()).append(" s each after a ").append(WARMUP.toSeconds())
+                .append(" s warm-up, ").append(CITIES).append(" cities, seed ").append(SEED).append('\n')
+                .append("- Host: ").append(Runtime.getRuntime().availableProcessors()).append(" CPU(s), Java ")
+                .append(System.getProperty("java.version")).append("\n\n")
+                .append("| Mode | Target rate | Sent | Throughput (2xx/s) | p50 ms | p90 ms | p99 ms | p99.9 ms | max ms | Statuses | Mock fallbacks |\n")
+                .append("|------|-------------|------|--------------------|--------|--------|--------|----------|--------|----------|----------------|\n");
+        StringBuilder csv = new StringBuilder("mode,target_rate,sent,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,statuses,fallbacks\n");
+        for (StepResult result : results) {
+            markdown.append(result.toRow()).append('\n');
+            csv.append(result.toCsv()).append('\n');
+        }
+        markdown.append("\nStatus -1 is a client timeout (").append(REQUEST_TIMEOUT.toSeconds())
+                .append(" s), -2 a connection error. Latency covers successful requests only.\n")
+                .append("Mock fallbacks are api-mode answers served from mock data because the upstream failed.\n");
+        Files.writeString(directory.resolve(name + ".csv"), csv);
+        Path report = directory.resolve(name + ".md");
+        Files.writeString(report, markdown);
+        return report;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private record StepResult(String mode, int rate, long sent, long elapsedNanos, Histogram histogram,
+                              Map<Integer, Long> statuses, long fallbacks) {
+
+        double throughput() {
+            return histogram.getTotalCount() * 1e9 / elapsedNanos;
+        }
+
+        double percentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1e6;
+        }
+
+        String toRow() {
+            return String.format(Locale.ROOT, "| %s | %d/s | %d | %.1f | %.1f | %.1f | %.1f | %.1f | %.1f | %s | %d |",
+                    mode, rate, sent, throughput(), percentileMillis(50), percentileMillis(90), percentileMillis(99),
+                    percentileMillis(99.9), histogram.getMaxValue() / 1e6, statuses, fallbacks);
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%.2f,\"%s\",%d",
+                    mode, rate, sent, throughput(), percentileMillis(50), percentileMillis(90), percentileMillis(99),
+                    percentileMillis(99.9), histogram.getMaxValue() / 1e6, statuses, fallbacks);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.weather.controller;
+
+import com.example.weather.service.AdaptiveConcurrencyLimiter;
+import com.example.weather.service.ClientRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter =
+            new AdaptiveConcurrencyLimiter(1, 1, 1, 0.9, Duration.ofSeconds(1));
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(
+            new ClientRateLimiter(1, 5, 1000), concurrencyLimiter, true, 5, "X-Api-Key", meterRegistry);
+
+    @Test
+    void testRealApiLookupsSpendTheBucketFaster() throws Exception {
+        assertEquals(200, lookup("client-a", true).getStatus());
+
+        MockHttpServletResponse rejected = lookup("client-a", true);
+        assertEquals(429, rejected.getStatus());
+        assertEquals("5", rejected.getHeader("Retry-After"));
+        assertEquals(200, lookup("client-b", false).getStatus());
+        assertEquals(1.0, meterRegistry.get("weather.admission").tag("decision", "rate-limited").counter().count());
+        assertEquals(2.0, meterRegistry.get("weather.admission").tag("decision", "admitted").counter().count());
+    }
+
+    @Test
+    void testLargeRealApiBatchIsThrottled() throws Exception {
+        assertEquals(200, lookup("client-a", false).getStatus());
+
+        // Three real API cities cost 15 tokens, more than the burst: it waits for a full bucket
+        AdmissionControlFilter.BatchCharge charge = batch("client-a");
+        assertEquals(1, charge.tryAcquire(3, true));
+        assertEquals(0, charge.tryAcquire(3, false));
+
+        // From a full bucket it is admitted, and the client then pays off the excess
+        assertEquals(0, batch("client-b").tryAcquire(3, true));
+        MockHttpServletResponse rejected = lookup("client-b", false);
+        assertEquals(429, rejected.getStatus());
+        assertEquals("11", rejected.getHeader("Retry-After"));
+        assertEquals(2.0, meterRegistry.get("weather.admission").tag("decision", "rate-limited").counter().count());
+    }
+
+    @Test
+    void testAsyncRequestHoldsItsSlotUntilItCompletes() throws Exception {
+        MockHttpServletRequest request = request("client-a", false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+        AsyncContext asyncContext = request.getAsyncContext();
+
+        MockHttpServletResponse shed = lookup("client-b", false);
+        assertEquals(503, shed.getStatus());
+        assertEquals(1, concurrencyLimiter.inFlight());
+
+        // Health checks are never limited
+        MockHttpServletRequest health = new MockHttpServletRequest("GET", "/api/weather/health");
+        MockHttpServletResponse healthResponse = new MockHttpServletResponse();
+        filter.doFilter(health, healthResponse, new MockFilterChain());
+        assertEquals(200, healthResponse.getStatus());
+
+        for (AsyncListener listener : ((MockAsyncContext) asyncContext).getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+        assertEquals(0, concurrencyLimiter.inFlight());
+        assertNull(response.getHeader("Retry-After"));
+        assertEquals(200, lookup("client-b", false).getStatus());
+    }
+
+    private MockHttpServletResponse lookup(String clientId, boolean useRealApi) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(clientId, useRealApi), response, new MockFilterChain());
+        return response;
+    }
+
+    private AdmissionControlFilter.BatchCharge batch(String clientId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/weather/batch");
+        request.addHeader("X-Api-Key", clientId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+        return (AdmissionControlFilter.BatchCharge) request.getAttribute(AdmissionControlFilter.BATCH_CHARGE_ATTRIBUTE);
+    }
+
+    private static MockHttpServletRequest request(String clientId, boolean useRealApi) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/weather");
+        request.setParameter("city", "London");
+        request.setParameter("useRealApi", Boolean.toString(useRealApi));
+        request.addHeader("X-Api-Key", clientId);
+        request.setAsyncSupported(true);
+        return request;
+    }
+}
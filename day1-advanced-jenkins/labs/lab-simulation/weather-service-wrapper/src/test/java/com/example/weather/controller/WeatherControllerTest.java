@@ -1,39 +1,96 @@
 package com.example.weather.controller;
 
+import com.example.weather.config.EncodingConfig;
+import com.example.weather.dto.WeatherPage;
+import com.example.weather.dto.WeatherReading;
 import com.example.weather.dto.WeatherResponse;
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherHourlyRollup;
+import com.example.weather.model.WeatherResolution;
+import com.example.weather.service.CityRegistry;
+import com.example.weather.service.WeatherExportService;
 import com.example.weather.service.WeatherService;
+import com.example.weather.service.WeatherStreamService;
+import com.example.weather.service.WeatherVersions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(WeatherController.class)
+@Import({EncodingConfig.class, WeatherVersions.class})
 class WeatherControllerTest {
 
+    private static final WeatherReading READING = new WeatherReading(7L, "Bucharest", 22.5, "Partly cloudy", 65,
+            1013.25, 12.5, LocalDateTime.of(2026, 3, 1, 12, 30), "mock");
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private WeatherVersions weatherVersions;
+
     @MockBean
     private WeatherService weatherService;
 
+    @MockBean
+    private WeatherStreamService weatherStreamService;
+
+    @MockBean
+    private WeatherExportService weatherExportService;
+
+    @MockBean
+    private CityRegistry cityRegistry;
+
     @Test
     void testGetWeatherWithMockData() throws Exception {
         WeatherResponse mockResponse = new WeatherResponse(
                 "Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock"
         );
 
-        when(weatherService.getWeatherData(any(), anyBoolean())).thenReturn(mockResponse);
+        when(weatherService.getWeatherData(any(), anyBoolean())).thenReturn(Mono.just(mockResponse));
 
-        mockMvc.perform(get("/api/weather")
+        MvcResult result = mockMvc.perform(get("/api/weather")
                 .param("city", "Bucharest")
                 .param("useRealApi", "false"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.city").value("Bucharest"))
                 .andExpect(jsonPath("$.temperature").value(22.5))
@@ -48,16 +105,251 @@ class WeatherControllerTest {
                 "Bucharest", 25.3, "Clear sky", 60, 1015.50, 8.2, "api"
         );
 
-        when(weatherService.getWeatherData(any(), anyBoolean())).thenReturn(apiResponse);
+        when(weatherService.getWeatherData(any(), anyBoolean())).thenReturn(Mono.just(apiResponse));
 
-        mockMvc.perform(get("/api/weather")
+        MvcResult result = mockMvc.perform(get("/api/weather")
                 .param("city", "Bucharest")
                 .param("useRealApi", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.city").value("Bucharest"))
                 .andExpect(jsonPath("$.source").value("api"));
     }
 
+    @Test
+    void testGetWeatherError() throws Exception {
+        when(weatherService.getWeatherData(any(), anyBoolean()))
+                .thenReturn(Mono.error(new IllegalStateException("database unavailable")));
+
+        MvcResult result = mockMvc.perform(get("/api/weather")
+                .param("city", "Bucharest"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.city").value("Bucharest"))
+                .andExpect(jsonPath("$.status").value("error"));
+    }
+
+    @Test
+    void testGetWeatherBatchReturnsPartialResults() throws Exception {
+        when(weatherService.getWeatherDataBatch(anyList(), anyBoolean())).thenReturn(Flux.just(
+                new WeatherResponse("Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock"),
+                WeatherResponse.error("Atlantis", "Error fetching weather data: timeout")));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cities\":[\"Bucharest\",\"Atlantis\"],\"useRealApi\":true}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("success"))
+                .andExpect(jsonPath("$[1].city").value("Atlantis"))
+                .andExpect(jsonPath("$[1].status").value("error"));
+    }
+
+    @Test
+    void testGetWeatherBatchChargesPerCity() throws Exception {
+        AdmissionControlFilter.BatchCharge charge = (cities, useRealApi) -> cities == 2 && useRealApi ? 7 : 0;
+
+        MvcResult result = mockMvc.perform(post("/api/weather/batch")
+                .requestAttr(AdmissionControlFilter.BATCH_CHARGE_ATTRIBUTE, charge)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cities\":[\"Bucharest\",\"Atlantis\"],\"useRealApi\":true}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"));
+        verify(weatherService, times(0)).getWeatherDataBatch(anyList(), anyBoolean());
+    }
+
+    @Test
+    void testGetWeatherBatchRejectsEmptyRequest() throws Exception {
+        mockMvc.perform(post("/api/weather/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cities\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamSendsServerSentEvents() throws Exception {
+        when(weatherStreamService.stream(anyString(), anyBoolean())).thenReturn(Flux.just(
+                new WeatherResponse("Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock"),
+                new WeatherResponse("Bucharest", 22.7, "Partly cloudy", 64, 1013.00, 12.1, "mock")));
+
+        MvcResult result = mockMvc.perform(get("/api/weather/stream/Bucharest"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:weather")))
+                .andExpect(content().string(containsString("\"temperature\":22.7")));
+    }
+
+    @Test
+    void testExportSendsGzipFile() throws Exception {
+        when(weatherExportService.export(eq(WeatherExportService.Format.CSV), eq("Bucharest"), any(), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(4, OutputStream.class).write("id,city_name\r\n1,Bucharest\r\n".getBytes());
+                    return 1L;
+                });
+
+        MvcResult result = mockMvc.perform(get("/api/weather/export")
+                .param("format", "csv")
+                .param("city", "Bucharest")
+                .param("from", "2026-01-01T00:00:00")
+                .param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andExpect(header().string("Content-Disposition", containsString("weather-export.csv.gz")))
+                .andReturn();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals("id,city_name\r\n1,Bucharest\r\n", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void testExportRejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/weather/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testHistoryReturnsNextCursor() throws Exception {
+        when(weatherService.getWeatherHistory(eq("Bucharest"), isNull(), eq(1)))
+                .thenReturn(new WeatherPage<>(List.of(READING), "next-page"));
+
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next-page"))
+                .andExpect(jsonPath("$[0].cityName").value("Bucharest"))
+                .andExpect(jsonPath("$[0].timestamp").value("2026-03-01T12:30:00"))
+                .andExpect(jsonPath("$[0].id").doesNotExist());
+    }
+
+    @Test
+    void testHistoryAsCbor() throws Exception {
+        when(weatherService.getWeatherHistory(eq("Bucharest"), isNull(), anyInt()))
+                .thenReturn(new WeatherPage<>(List.of(READING), null));
+
+        byte[] body = mockMvc.perform(get("/api/weather/history/Bucharest")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode rows = new CBORMapper().readTree(body);
+        assertEquals("Partly cloudy", rows.get(0).get("description").asText());
+        assertEquals("2026-03-01T12:30:00", rows.get(0).get("timestamp").asText());
+    }
+
+    @Test
+    void testHistoryNotModifiedUntilCityChanges() throws Exception {
+        City bucharest = new City(1, "Bucharest", "bucharest");
+        when(cityRegistry.find("Bucharest")).thenReturn(bucharest);
+        when(weatherService.getWeatherHistory(eq("Bucharest"), isNull(), anyInt()))
+                .thenReturn(new WeatherPage<>(List.of(READING), null));
+
+        String etag = mockMvc.perform(get("/api/weather/history/Bucharest"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andExpect(content().string(""));
+        verify(weatherService, times(1)).getWeatherHistory(eq("Bucharest"), isNull(), anyInt());
+
+        weatherVersions.recordWrite(2);
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        weatherVersions.recordWrite(bucharest.getId());
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].cityName").value("Bucharest"));
+        verify(weatherService, times(2)).getWeatherHistory(eq("Bucharest"), isNull(), anyInt());
+    }
+
+    @Test
+    void testHistoryEtagDependsOnMediaType() throws Exception {
+        when(weatherService.getWeatherHistory(eq("Bucharest"), isNull(), anyInt()))
+                .thenReturn(new WeatherPage<>(List.of(READING), null));
+
+        String etag = mockMvc.perform(get("/api/weather/history/Bucharest")
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+    }
+
+    @Test
+    void testStatsNotModifiedSince() throws Exception {
+        when(weatherService.getRequestCountBySource(anyString())).thenReturn(3L);
+        when(weatherService.getCityRequestCounts()).thenReturn(List.of());
+
+        String lastModified = mockMvc.perform(get("/api/weather/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mockRequests").value(3))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/api/weather/stats")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+        verify(weatherService, times(1)).getCityRequestCounts();
+    }
+
+    @Test
+    void testHistoryRejectsInvalidCursor() throws Exception {
+        when(weatherService.getWeatherHistory(any(), any(), anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/weather/history/Bucharest")
+                .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testRecentUsesRollupsForLongRanges() throws Exception {
+        WeatherHourlyRollup rollup = new WeatherHourlyRollup();
+        rollup.setCityName("Bucharest");
+        rollup.setSampleCount(4);
+        rollup.setSumTemperature(90.0);
+        when(weatherService.resolutionFor(720)).thenReturn(WeatherResolution.HOURLY);
+        doReturn(new WeatherPage<>(List.of(rollup), null)).when(weatherService)
+                .getRecentRollups(eq("Bucharest"), eq(720), eq(WeatherResolution.HOURLY), isNull(), anyInt());
+
+        mockMvc.perform(get("/api/weather/recent/Bucharest")
+                .param("hours", "720"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sampleCount").value(4))
+                .andExpect(jsonPath("$[0].avgTemperature").value(22.5))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+    }
+
     @Test
     void testHealthEndpoint() throws Exception {
         mockMvc.perform(get("/api/weather/health"))
@@ -0,0 +1,61 @@
+package com.example.weather.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(4, 2, 6, 0.5, Duration.ofMillis(500));
+
+    @Test
+    void testRejectsBeyondTheLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.inFlight());
+    }
+
+    @Test
+    void testSlowRequestsShrinkAndFastRequestsUnderLoadGrowTheLimit() {
+        limiter.tryAcquire();
+        limiter.release(SLOW);
+        assertEquals(2, limiter.limit());
+        limiter.tryAcquire();
+        limiter.release(SLOW);
+        assertEquals(2, limiter.limit(), "never below min-limit");
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.release(FAST);
+        limiter.release(FAST);
+        assertEquals(3, limiter.limit());
+        for (int i = 0; i < 10; i++) {
+            while (limiter.tryAcquire()) {
+                // fill the limit
+            }
+            while (limiter.inFlight() > 0) {
+                limiter.release(FAST);
+            }
+        }
+        assertEquals(6, limiter.limit(), "never above max-limit");
+    }
+
+    @Test
+    void testFastRequestsWithoutLoadKeepTheLimit() {
+        limiter.tryAcquire();
+        limiter.release(FAST);
+        assertEquals(4, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.repository.CityRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import(CityRegistry.class)
+class CityRegistryTest {
+
+    @Autowired
+    private CityRegistry cityRegistry;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Test
+    void testSpellingsAndAliasesResolveToOneCity() {
+        City bucharest = cityRegistry.find("Bucharest");
+
+        assertNotNull(bucharest);
+        assertSame(bucharest, cityRegistry.find("  BUCHAREST "));
+        assertSame(bucharest, cityRegistry.find("Bucuresti"));
+        assertSame(bucharest, cityRegistry.resolve("bucurești"));
+        assertSame(cityRegistry.find("New York"), cityRegistry.find("new \t york"));
+        assertSame(cityRegistry.find("New York"), cityRegistry.find("NYC"));
+        assertSame(bucharest, cityRegistry.get(bucharest.getId()));
+        assertEquals("bucharest", cityRegistry.keyOf("Bucuresti"));
+        assertNull(cityRegistry.find("Bucharest Old Town"));
+    }
+
+    @Test
+    void testNewCityIsRegisteredOnce() {
+        City cluj = cityRegistry.resolve("  Cluj   Napoca ");
+
+        assertEquals("Cluj Napoca", cluj.getName());
+        assertEquals("cluj napoca", cluj.getCityKey());
+        assertSame(cluj, cityRegistry.resolve("CLUJ NAPOCA"));
+        assertEquals(cluj.getId(), cityRepository.findByCityKey("cluj napoca").orElseThrow().getId());
+        assertThrows(IllegalArgumentException.class, () -> cityRegistry.resolve(" \t "));
+    }
+
+    @Test
+    void testRegistryIsBounded() {
+        CityRegistry bounded = new CityRegistry(cityRepository, (int) cityRepository.count() + 1);
+        bounded.load();
+
+        City turda = bounded.resolve("Turda");
+        City dej = bounded.resolve("Dej");
+        assertEquals("Dej", dej.getName());
+        assertFalse(dej.isRegistered());
+        assertNull(bounded.find("Dej"));
+        assertSame(turda, bounded.resolve("TURDA"));
+        assertSame(bounded.find("London"), bounded.resolve("london"));
+        assertTrue(cityRepository.findByCityKey("dej").isEmpty());
+    }
+
+    @Test
+    void testLookupsSurviveIndexGrowth() {
+        for (int i = 0; i < 300; i++) {
+            cityRegistry.resolve("Growth City " + i);
+        }
+
+        for (int i = 0; i < 300; i++) {
+            City city = cityRegistry.find("growth city " + i);
+            assertEquals("Growth City " + i, city.getName());
+            assertSame(city, cityRegistry.get(city.getId()));
+        }
+    }
+}
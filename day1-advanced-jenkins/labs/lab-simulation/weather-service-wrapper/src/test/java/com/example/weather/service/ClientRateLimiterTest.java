@@ -0,0 +1,92 @@
+package com.example.weather.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 1000, now::get);
+
+    @Test
+    void testBurstThenRefillPerClient() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("a", 1));
+        }
+        long wait = limiter.tryAcquire("a", 1);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+        // Other clients have their own bucket
+        assertEquals(0, limiter.tryAcquire("b", 5));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, limiter.tryAcquire("a", 1));
+        assertTrue(limiter.tryAcquire("a", 1) > 0);
+
+        // An idle bucket refills up to the burst, never beyond it
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(0, limiter.tryAcquire("a", 5));
+        assertTrue(limiter.tryAcquire("a", 1) > 0);
+    }
+
+    @Test
+    void testCostlyRequestsNeedMoreTokens() {
+        assertEquals(0, limiter.tryAcquire("a", 3));
+        assertTrue(limiter.tryAcquire("a", 3) > 0, "a rejected request must not take tokens");
+        assertEquals(0, limiter.tryAcquire("a", 2));
+    }
+
+    @Test
+    void testDebtOutlivesAnIdleGapLongerThanTheBurst() {
+        // 20 tokens take 2 s to refill, four times the 0.5 s burst
+        assertEquals(0, limiter.tryAcquire("a", 20));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, limiter.trackedClients());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(600), limiter.tryAcquire("a", 1));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertEquals(0, limiter.tryAcquire("a", 1));
+
+        // Full again and idle for another refill: no longer tracked
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(0, limiter.trackedClients());
+    }
+
+    @Test
+    void testConcurrentRequestsNeverExceedTheBurst() throws InterruptedException {
+        ClientRateLimiter slow = new ClientRateLimiter(0.001, 100, 1000, System::nanoTime);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (slow.tryAcquire("shared", 1) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, admitted.get());
+        assertEquals(1, slow.trackedClients());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherDataRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotCityRefresherTest {
+
+    private static final City BUCHAREST = new City(1, "Bucharest", "bucharest");
+    private static final City LONDON = new City(2, "London", "london");
+    private static final City PARIS = new City(3, "Paris", "paris");
+    private static final City TOKYO = new City(5, "Tokyo", "tokyo");
+
+    private final OpenWeatherMapService openWeatherMapService = mock(OpenWeatherMapService.class);
+    private final WeatherDataRepository repository = mock(WeatherDataRepository.class);
+    private final CacheManager cacheManager = mock(CacheManager.class);
+    private final CityRegistry cityRegistry = mock(CityRegistry.class);
+    private final HotCityRefresher refresher = new HotCityRefresher(openWeatherMapService, cityRegistry, repository,
+            Schedulers.immediate(), cacheManager, 2, 10, 1, Duration.ofMinutes(30), true, Duration.ofMinutes(5));
+
+    @Test
+    void testLastKnownGoodServedFromMemory() {
+        WeatherData reading = reading("api", LocalDateTime.now().minusMinutes(5));
+        refresher.recordHit(BUCHAREST);
+        refresher.remember(BUCHAREST, reading);
+
+        assertSame(reading, refresher.lastKnownGood(BUCHAREST).block());
+        verify(repository, never()).findFirstByCityIdAndSourceOrderByTimestampDesc(BUCHAREST.getId(), "api");
+    }
+
+    @Test
+    void testLastKnownGoodSkipsNewerMockReadings() {
+        WeatherData apiReading = reading("api", LocalDateTime.now().minusMinutes(10));
+        // The newest row is a mock fallback; the recent api reading before it is served
+        when(repository.findFirstByCityIdAndSourceOrderByTimestampDesc(LONDON.getId(), "api"))
+                .thenReturn(Optional.of(apiReading));
+
+        assertSame(apiReading, refresher.lastKnownGood(LONDON).block());
+    }
+
+    @Test
+    void testLastKnownGoodIgnoresOldReadings() {
+        when(repository.findFirstByCityIdAndSourceOrderByTimestampDesc(PARIS.getId(), "api"))
+                .thenReturn(Optional.of(reading("api", LocalDateTime.now().minusHours(2))));
+
+        assertNull(refresher.lastKnownGood(PARIS).block());
+    }
+
+    @Test
+    void testRefreshFetchesHottestCities() {
+        when(openWeatherMapService.getWeatherData(LONDON)).thenReturn(Mono.just(reading("api", LocalDateTime.now())));
+        when(openWeatherMapService.getWeatherData(PARIS)).thenReturn(Mono.just(reading("api", LocalDateTime.now())));
+        for (int i = 0; i < 3; i++) {
+            refresher.recordHit(LONDON);
+            refresher.recordHit(PARIS);
+        }
+        refresher.recordHit(TOKYO);
+
+        refresher.refreshHotCities();
+
+        verify(openWeatherMapService).getWeatherData(LONDON);
+        verify(openWeatherMapService).getWeatherData(PARIS);
+        verify(openWeatherMapService, never()).getWeatherData(TOKYO);
+    }
+
+    @Test
+    void testWarmUpRestoresLatestReadings() {
+        Cache cache = mock(Cache.class);
+        when(cacheManager.getCache("weather")).thenReturn(cache);
+        when(cityRegistry.get(BUCHAREST.getId())).thenReturn(BUCHAREST);
+        when(cityRegistry.get(LONDON.getId())).thenReturn(LONDON);
+        WeatherData fresh = reading("api", LocalDateTime.now().minusMinutes(1));
+        WeatherData older = reading("api", LocalDateTime.now().minusMinutes(20));
+        older.setCity(LONDON);
+        when(repository.findLatestApiReadingsSince(any(LocalDateTime.class), any(Limit.class)))
+                .thenReturn(List.of(fresh, older));
+
+        refresher.warmUp();
+
+        verify(cache).put(BUCHAREST.getId(), fresh);
+        verify(cache, never()).put(any(), eq(older));
+        assertSame(older, refresher.lastKnownGood(LONDON).block());
+    }
+
+    private static WeatherData reading(String source, LocalDateTime timestamp) {
+        WeatherData weatherData = new WeatherData("Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, source);
+        weatherData.setCity(BUCHAREST);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class MockWeatherServiceTest {
+
+    private static final List<String> CITIES = List.of("Bucharest", "London", "Atlantis");
+    private static final int READINGS = 50;
+
+    @Test
+    void testSeededReadingsDoNotDependOnThreads() throws Exception {
+        Map<String, List<String>> sequential = new ConcurrentHashMap<>();
+        MockWeatherService first = new MockWeatherService(42L);
+        for (String city : CITIES) {
+            sequential.put(city, readings(first, city));
+        }
+
+        // Each city on its own thread, interleaved with the others
+        Map<String, List<String>> concurrent = new ConcurrentHashMap<>();
+        MockWeatherService second = new MockWeatherService(42L);
+        ExecutorService executor = Executors.newFixedThreadPool(CITIES.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String city : CITIES) {
+                futures.add(executor.submit(() -> concurrent.put(city, readings(second, city))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(sequential, concurrent);
+        assertEquals(sequential.get("London"), readings(new MockWeatherService(42L), " london "));
+        assertNotEquals(sequential.get("London"), readings(new MockWeatherService(7L), "London"));
+    }
+
+    private static List<String> readings(MockWeatherService service, String city) {
+        List<String> readings = new ArrayList<>();
+        for (int i = 0; i < READINGS; i++) {
+            readings.add(describe(service.getMockWeatherData(city)));
+        }
+        return readings;
+    }
+
+    private static String describe(WeatherData weatherData) {
+        return weatherData.getTemperature() + "/" + weatherData.getDescription() + "/" + weatherData.getHumidity()
+                + "/" + weatherData.getPressure() + "/" + weatherData.getWindSpeed();
+    }
+}
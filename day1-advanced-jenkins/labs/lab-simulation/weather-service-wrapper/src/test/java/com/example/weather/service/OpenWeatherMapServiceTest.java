@@ -0,0 +1,207 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class OpenWeatherMapServiceTest {
+
+    private static final City BUCHAREST = new City(1, "Bucharest", "bucharest");
+    private static final City LONDON = new City(2, "London", "london");
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private Function<ClientRequest, Mono<ClientResponse>> upstream = OpenWeatherMapServiceTest::answer;
+    // Mirrors application.properties, with one bulkhead permit and no backoff to keep the tests short
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .slidingWindowSize(20)
+            .minimumNumberOfCalls(10)
+            .failureRateThreshold(50)
+            .build());
+    private final RetryRegistry retries = RetryRegistry.of(RetryConfig.custom()
+            .maxAttempts(3)
+            .waitDuration(Duration.ofMillis(10))
+            .ignoreExceptions(CallNotPermittedException.class, BulkheadFullException.class)
+            .build());
+    private final BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+            .maxConcurrentCalls(1)
+            .maxWaitDuration(Duration.ZERO)
+            .build());
+
+    @Test
+    void testGroupCallCoversCitiesWithKnownIds() {
+        OpenWeatherMapService service = service();
+        service.getWeatherData(BUCHAREST).block();
+        service.getWeatherData(LONDON).block();
+        requests.clear();
+
+        Map<Integer, WeatherData> readings = service.getWeatherDataGroup(List.of(BUCHAREST, LONDON)).block();
+
+        assertEquals(List.of("/group"), requests);
+        assertEquals("Bucharest", readings.get(BUCHAREST.getId()).getCityName());
+        assertEquals("London", readings.get(LONDON.getId()).getCityName());
+    }
+
+    @Test
+    void testMalformedGroupEntryFailsOnlyItsCity() {
+        OpenWeatherMapService service = service();
+        service.getWeatherData(BUCHAREST).block();
+        service.getWeatherData(LONDON).block();
+        // Bucharest has no weather array, London no main block
+        upstream = request -> json("{\"cnt\":2,\"list\":[{\"id\":1001,\"name\":\"Bucharest\","
+                + "\"main\":{\"temp\":21.5,\"humidity\":60,\"pressure\":1013}},"
+                + "{\"id\":1002,\"name\":\"London\",\"weather\":[{\"description\":\"rain\"}]}]}");
+
+        Map<Integer, WeatherData> readings = service.getWeatherDataGroup(List.of(BUCHAREST, LONDON)).block();
+
+        assertEquals(Set.of(BUCHAREST.getId()), readings.keySet());
+        assertEquals("", readings.get(BUCHAREST.getId()).getDescription());
+    }
+
+    @Test
+    void testGroupWithoutKnownIdsSkipsUpstream() {
+        OpenWeatherMapService service = service();
+
+        assertEquals(Map.of(), service.getWeatherDataGroup(List.of(BUCHAREST, LONDON)).block());
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    void testSlowResponseTimesOutEveryAttempt() {
+        upstream = request -> Mono.never();
+
+        Throwable error = failure(service(50).getWeatherData(BUCHAREST));
+
+        assertInstanceOf(TimeoutException.class, error);
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void testServerErrorsAreRetriedUntilAttemptsRunOut() {
+        upstream = request -> Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+
+        Throwable error = failure(service().getWeatherData(BUCHAREST));
+
+        assertInstanceOf(WebClientResponseException.ServiceUnavailable.class, error);
+        assertEquals(3, requests.size());
+        assertEquals(3, circuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void testOpenCircuitFailsFastWithoutUpstreamCall() {
+        OpenWeatherMapService service = service();
+        circuitBreaker().transitionToOpenState();
+
+        Throwable error = failure(service.getWeatherData(BUCHAREST));
+
+        assertInstanceOf(CallNotPermittedException.class, error);
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    void testBulkheadRejectionsDoNotOpenTheCircuit() {
+        upstream = request -> Mono.never();
+        OpenWeatherMapService service = service();
+        // Holds the only permit
+        Disposable holder = service.getWeatherData(BUCHAREST).subscribe();
+
+        for (int i = 0; i < 20; i++) {
+            assertInstanceOf(BulkheadFullException.class, failure(service.getWeatherData(LONDON)));
+        }
+
+        assertEquals(1, requests.size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker().getState());
+        assertEquals(0, circuitBreaker().getMetrics().getNumberOfFailedCalls());
+        // Cancelled before its timeout fires, so no error outlives the test
+        holder.dispose();
+    }
+
+    private OpenWeatherMapService service() {
+        return service(5000);
+    }
+
+    private OpenWeatherMapService service(long timeoutMillis) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request.url().getPath());
+                    return upstream.apply(request);
+                })
+                .build();
+        OpenWeatherMapService service = new OpenWeatherMapService("test", timeoutMillis, Duration.ZERO, 1, webClient,
+                circuitBreakers, retries, bulkheads, new SimpleMeterRegistry());
+        service.startBatching();
+        return service;
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return circuitBreakers.circuitBreaker(OpenWeatherMapService.RESILIENCE_INSTANCE);
+    }
+
+    private static Throwable failure(Mono<?> call) {
+        return call.then(Mono.<Throwable>empty()).onErrorResume(Mono::just).block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Answers {@code /weather?q=} and {@code /group?id=} like OpenWeatherMap, with an id per city name.
+     */
+    private static Mono<ClientResponse> answer(ClientRequest request) {
+        Map<String, String> query = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams()
+                .toSingleValueMap();
+        String body;
+        if (request.url().getPath().equals("/group")) {
+            List<String> cities = List.of(query.get("id").split(",")).stream()
+                    .map(id -> id.equals("1001") ? "Bucharest" : "London")
+                    .toList();
+            body = cities.stream().map(OpenWeatherMapServiceTest::reading)
+                    .collect(Collectors.joining(",", "{\"cnt\":" + cities.size() + ",\"list\":[", "]}"));
+        } else {
+            body = reading(query.get("q"));
+        }
+        return json(body);
+    }
+
+    private static Mono<ClientResponse> json(String body) {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private static String reading(String city) {
+        long id = city.equals("Bucharest") ? 1001 : 1002;
+        return String.format(Locale.ROOT, "{\"id\":%d,\"name\":\"%s\",\"main\":{\"temp\":21.5,\"humidity\":60,"
+                + "\"pressure\":1013},\"weather\":[{\"description\":\"clear sky\"}],\"wind\":{\"speed\":3.0}}", id, city);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherCursor;
+import com.example.weather.dto.WeatherReading;
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentWeatherBufferTest {
+
+    private static final City BUCHAREST = new City(1, "Bucharest", "bucharest");
+    private static final City LONDON = new City(2, "London", "london");
+
+    private final LocalDateTime now = LocalDateTime.now().plusMinutes(1);
+
+    @Test
+    void testPagesNewestFirstInKeysetOrder() {
+        RecentWeatherBuffer buffer = new RecentWeatherBuffer(16, 10);
+        buffer.record(reading(BUCHAREST, 1, now.plusSeconds(1)));
+        buffer.record(reading(BUCHAREST, 3, now.plusSeconds(3)));
+        // Stored by a later batch, taken earlier
+        buffer.record(reading(BUCHAREST, 2, now.plusSeconds(2)));
+        buffer.record(reading(LONDON, 4, now.plusSeconds(4)));
+
+        RecentWeatherBuffer.Window first = buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 2);
+        assertEquals(List.of(3L, 2L), ids(first.items()));
+        assertTrue(first.complete());
+        assertEquals("Bucharest", first.items().get(0).cityName());
+        assertEquals(now.plusSeconds(3).withNano(0), first.items().get(0).timestamp().withNano(0));
+
+        RecentWeatherBuffer.Window second = buffer.recent(BUCHAREST.getId(), now,
+                WeatherCursor.after(first.items().get(1)), 2);
+        assertEquals(List.of(1L), ids(second.items()));
+        assertTrue(second.complete());
+
+        RecentWeatherBuffer.Window since = buffer.recent(BUCHAREST.getId(), now.plusSeconds(2), WeatherCursor.FIRST, 10);
+        assertEquals(List.of(3L, 2L), ids(since.items()));
+    }
+
+    @Test
+    void testRangeBeyondEvictedReadingsIsIncomplete() {
+        RecentWeatherBuffer buffer = new RecentWeatherBuffer(16, 10);
+        for (int i = 1; i <= 20; i++) {
+            buffer.record(reading(BUCHAREST, i, now.plusSeconds(i)));
+        }
+
+        RecentWeatherBuffer.Window all = buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 100);
+        assertEquals(16, all.items().size());
+        assertEquals(5L, all.items().get(15).id());
+        assertFalse(all.complete());
+
+        assertTrue(buffer.recent(BUCHAREST.getId(), now.plusSeconds(5), WeatherCursor.FIRST, 100).complete());
+        assertTrue(buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 10).complete());
+
+        // Already evicted; left to the database
+        buffer.record(reading(BUCHAREST, 21, now.plusSeconds(3)));
+        assertEquals(16, buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 100).items().size());
+    }
+
+    @Test
+    void testOutOfOrderReadingAtCapacityIsNotBuffered() {
+        RecentWeatherBuffer buffer = new RecentWeatherBuffer(16, 10);
+        for (int i = 1; i <= 16; i++) {
+            buffer.record(reading(BUCHAREST, i, now.plusSeconds(i * 2)));
+        }
+
+        // Between the evicted position and the oldest buffered reading, from a late batch
+        buffer.record(reading(BUCHAREST, 17, now.plusSeconds(1)));
+
+        RecentWeatherBuffer.Window all = buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 100);
+        assertEquals(16, all.items().size());
+        assertEquals(1L, all.items().get(15).id());
+        assertFalse(all.complete());
+        assertTrue(buffer.recent(BUCHAREST.getId(), now.plusSeconds(2), WeatherCursor.FIRST, 100).complete());
+
+        // A newer reading still evicts the oldest one
+        buffer.record(reading(BUCHAREST, 18, now.plusSeconds(40)));
+        RecentWeatherBuffer.Window newest = buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 100);
+        assertEquals(18L, newest.items().get(0).id());
+        assertEquals(2L, newest.items().get(15).id());
+        assertFalse(buffer.recent(BUCHAREST.getId(), now.plusSeconds(2), WeatherCursor.FIRST, 100).complete());
+    }
+
+    @Test
+    void testUnbufferedCities() {
+        RecentWeatherBuffer buffer = new RecentWeatherBuffer(16, 1);
+
+        // Nothing stored since startup
+        assertTrue(buffer.recent(LONDON.getId(), now, WeatherCursor.FIRST, 10).complete());
+        assertFalse(buffer.recent(LONDON.getId(), now.minusHours(1), WeatherCursor.FIRST, 10).complete());
+
+        buffer.record(reading(BUCHAREST, 1, now));
+        buffer.record(reading(LONDON, 2, now));
+        assertFalse(buffer.recent(LONDON.getId(), now, WeatherCursor.FIRST, 10).complete());
+        assertEquals(1, buffer.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 10).items().size());
+
+        RecentWeatherBuffer disabled = new RecentWeatherBuffer(0, 10);
+        disabled.record(reading(BUCHAREST, 1, now));
+        assertFalse(disabled.recent(BUCHAREST.getId(), now, WeatherCursor.FIRST, 10).complete());
+    }
+
+    private static WeatherData reading(City city, long id, LocalDateTime timestamp) {
+        WeatherData weatherData = new WeatherData(city.getName(), 22.5, "Partly cloudy", 65, 1013.25, 12.5, "api");
+        weatherData.setCity(city);
+        weatherData.setId(id);
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+
+    private static List<Long> ids(List<WeatherReading> readings) {
+        return readings.stream().map(WeatherReading::id).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamBatcherTest {
+
+    private static final City BUCHAREST = new City(1, "Bucharest", "bucharest");
+    private static final City LONDON = new City(2, "London", "london");
+    private static final City PARIS = new City(3, "Paris", "paris");
+
+    private final List<List<City>> calls = new CopyOnWriteArrayList<>();
+    private final Map<Integer, WeatherData> readings = Map.of(
+            BUCHAREST.getId(), reading("Bucharest"),
+            LONDON.getId(), reading("London"));
+
+    @Test
+    void testCitiesWithinWindowShareOneCall() throws Exception {
+        UpstreamBatcher batcher = new UpstreamBatcher(Duration.ofMillis(200), 20, this::fetch, Schedulers.parallel());
+
+        CompletableFuture<WeatherData> bucharest = batcher.lookup(BUCHAREST).toFuture();
+        CompletableFuture<WeatherData> bucharestAgain = batcher.lookup(BUCHAREST).toFuture();
+        CompletableFuture<WeatherData> london = batcher.lookup(LONDON).toFuture();
+        CompletableFuture<WeatherData> paris = batcher.lookup(PARIS).toFuture();
+        assertTrue(calls.isEmpty());
+
+        assertSame(readings.get(BUCHAREST.getId()), bucharest.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(BUCHAREST, LONDON, PARIS)), calls);
+        assertSame(readings.get(BUCHAREST.getId()), bucharestAgain.join());
+        assertSame(readings.get(LONDON.getId()), london.join());
+        assertNull(paris.join());
+
+        batcher.lookup(PARIS).block(Duration.ofSeconds(5));
+        assertEquals(List.of(PARIS), calls.get(1));
+    }
+
+    @Test
+    void testFullBatchIsSentAtOnce() throws Exception {
+        UpstreamBatcher batcher = new UpstreamBatcher(Duration.ofMillis(200), 2, this::fetch, Schedulers.parallel());
+
+        CompletableFuture<WeatherData> bucharest = batcher.lookup(BUCHAREST).toFuture();
+        CompletableFuture<WeatherData> london = batcher.lookup(LONDON).toFuture();
+        CompletableFuture<WeatherData> paris = batcher.lookup(PARIS).toFuture();
+
+        assertEquals(List.of(List.of(BUCHAREST, LONDON)), calls);
+        assertTrue(bucharest.isDone() && london.isDone());
+        assertFalse(paris.isDone());
+
+        assertNull(paris.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(BUCHAREST, LONDON), List.of(PARIS)), calls);
+    }
+
+    @Test
+    void testFailedCallFailsEveryCaller() {
+        UpstreamBatcher batcher = new UpstreamBatcher(Duration.ofMillis(10), 20,
+                cities -> Mono.error(new IllegalStateException("upstream down")), Schedulers.parallel());
+
+        CompletableFuture<WeatherData> bucharest = batcher.lookup(BUCHAREST).toFuture();
+        CompletableFuture<WeatherData> london = batcher.lookup(LONDON).toFuture();
+
+        assertThrows(Exception.class, () -> bucharest.get(5, TimeUnit.SECONDS));
+        assertThrows(Exception.class, london::join);
+    }
+
+    private Mono<Map<Integer, WeatherData>> fetch(List<City> cities) {
+        calls.add(cities);
+        return Mono.just(readings);
+    }
+
+    private static WeatherData reading(String city) {
+        return new WeatherData(city, 22.5, "Partly cloudy", 65, 1013.25, 12.5, "api");
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.weather.service;
+
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherDataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WeatherDataWriterTest {
+
+    private static final City BUCHAREST = new City(1, "Bucharest", "bucharest");
+
+    private final WeatherDataRepository repository = mock(WeatherDataRepository.class);
+    private final WeatherStats stats = new WeatherStats();
+    private final WeatherVersions versions = new WeatherVersions();
+    private final RecentWeatherBuffer recentWeatherBuffer = new RecentWeatherBuffer(16, 10);
+
+    @Test
+    void testFlushInsertsInBatches() {
+        WeatherDataWriter writer = writer(10, 2, WeatherDataWriter.OverflowPolicy.CALLER_RUNS);
+        for (int i = 0; i < 5; i++) {
+            writer.write(reading()).block();
+        }
+
+        verify(repository, never()).saveAll(anyList());
+        writer.flush();
+
+        verify(repository, times(3)).saveAll(anyList());
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(5, stats.getCountBySource("mock"));
+        assertEquals(5, versions.city(BUCHAREST).sequence());
+    }
+
+    @Test
+    void testCallerRunsWhenQueueIsFull() {
+        WeatherDataWriter writer = writer(1, 10, WeatherDataWriter.OverflowPolicy.CALLER_RUNS);
+        writer.write(reading()).block();
+        writer.write(reading()).block();
+
+        verify(repository).save(any(WeatherData.class));
+        assertEquals(1, writer.getQueueSize());
+    }
+
+    @Test
+    void testDropWhenQueueIsFull() {
+        WeatherDataWriter writer = writer(1, 10, WeatherDataWriter.OverflowPolicy.DROP);
+        writer.write(reading()).block();
+        writer.write(reading()).block();
+
+        verify(repository, never()).save(any(WeatherData.class));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    void testCloseDrainsQueue() {
+        WeatherDataWriter writer = writer(10, 10, WeatherDataWriter.OverflowPolicy.DROP);
+        writer.write(reading()).block();
+        writer.write(reading()).block();
+
+        writer.close();
+
+        verify(repository).saveAll(anyList());
+        assertEquals(0, writer.getQueueSize());
+    }
+
+    @Test
+    void testCloseWaitsForBlockedWriters() throws Exception {
+        WeatherDataWriter writer = new WeatherDataWriter(repository, stats, versions, recentWeatherBuffer,
+                Schedulers.boundedElastic(), 1, 10, WeatherDataWriter.OverflowPolicy.BLOCK, new SimpleMeterRegistry());
+        writer.write(reading()).block();
+        CompletableFuture<Void> blocked = writer.write(reading()).toFuture();
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+
+        writer.close();
+
+        blocked.get(5, TimeUnit.SECONDS);
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(2, stats.getCountBySource("mock"));
+    }
+
+    @Test
+    void testFailedBatchIsInsertedRowByRow() {
+        WeatherDataWriter writer = writer(10, 10, WeatherDataWriter.OverflowPolicy.DROP);
+        WeatherData failing = reading();
+        failing.setSource("api");
+        when(repository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("batch"));
+        when(repository.save(failing)).thenThrow(new DataIntegrityViolationException("row"));
+        writer.write(reading()).block();
+        writer.write(failing).block();
+        writer.write(reading()).block();
+
+        writer.flush();
+
+        verify(repository, times(3)).save(any(WeatherData.class));
+        assertEquals(2, stats.getCountBySource("mock"));
+        assertEquals(0, stats.getCountBySource("api"));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    private WeatherDataWriter writer(int queueCapacity, int batchSize, WeatherDataWriter.OverflowPolicy policy) {
+        return new WeatherDataWriter(repository, stats, versions, recentWeatherBuffer, Schedulers.immediate(),
+                queueCapacity, batchSize, policy, new SimpleMeterRegistry());
+    }
+
+    private static WeatherData reading() {
+        WeatherData weatherData = new WeatherData("Bucharest", 22.5, "Partly cloudy", 65, 1013.25, 12.5, "mock");
+        weatherData.setCity(BUCHAREST);
+        return weatherData;
+    }
+}
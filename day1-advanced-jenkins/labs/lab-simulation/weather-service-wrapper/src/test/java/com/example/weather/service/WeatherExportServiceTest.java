@@ -0,0 +1,80 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherDataRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({WeatherExportService.class, CityRegistry.class})
+@TestPropertySource(properties = "weather.export.chunk-size=2")
+class WeatherExportServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(1);
+
+    @Autowired
+    private WeatherExportService exportService;
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    @Autowired
+    private CityRegistry cityRegistry;
+
+    @Test
+    void testNdjsonExportPagesThroughFilteredRowsInOrder() throws IOException {
+        weatherDataRepository.saveAllAndFlush(List.of(
+                reading("Bucharest", "Sunny", START.plusMinutes(30)),
+                reading("Bucharest", "Rainy", START),
+                reading("London", "Cloudy", START.plusMinutes(10)),
+                // Same timestamp as the previous Bucharest row: the keyset must not skip it
+                reading("Bucharest", "Clear", START.plusMinutes(30)),
+                reading("Bucharest", "Overcast", START.plusMinutes(50)),
+                reading("Bucharest", "Sunny", START.plusHours(2))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exportService.export(WeatherExportService.Format.NDJSON, " BUCHAREST",
+                START, START.plusHours(1), out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(4, rows);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).contains("\"description\":\"Rainy\""));
+        assertTrue(lines.get(3).contains("\"description\":\"Overcast\""));
+        assertTrue(lines.stream().allMatch(line -> line.startsWith("{\"id\":") && line.contains("\"cityName\":\"Bucharest\"")));
+    }
+
+    @Test
+    void testCsvExportQuotesTextFields() throws IOException {
+        weatherDataRepository.saveAndFlush(reading("Washington, D.C.", "Light \"drizzle\"", START));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(WeatherExportService.Format.CSV, null, null, null, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("id,city_name,temperature,description,humidity,pressure,wind_speed,timestamp,source", lines.get(0));
+        assertTrue(lines.get(1).contains(",\"Washington, D.C.\",21.5,\"Light \"\"drizzle\"\"\",60,1013.0,3.5,"),
+                lines.get(1));
+        assertTrue(lines.get(1).endsWith(",api"));
+    }
+
+    private WeatherData reading(String city, String description, LocalDateTime timestamp) {
+        WeatherData reading = new WeatherData(city, 21.5, description, 60, 1013.0, 3.5, "api");
+        reading.setCity(cityRegistry.resolve(city));
+        reading.setTimestamp(timestamp);
+        return reading;
+    }
+}
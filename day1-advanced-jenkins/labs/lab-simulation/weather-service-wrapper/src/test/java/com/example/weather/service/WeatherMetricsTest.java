@@ -0,0 +1,44 @@
+package com.example.weather.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WeatherMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WeatherMetrics metrics = new WeatherMetrics(registry);
+
+    @Test
+    void testTimeRecordsOutcome() {
+        metrics.time(WeatherMetrics.Stage.UPSTREAM, Mono.just("ok")).block();
+        metrics.time(WeatherMetrics.Stage.UPSTREAM, Mono.empty()).block();
+        assertThrows(IllegalStateException.class, () -> metrics.time(WeatherMetrics.Stage.UPSTREAM,
+                Mono.error(new IllegalStateException("down"))).block());
+
+        assertEquals(2, stageCount("upstream", "success"));
+        assertEquals(1, stageCount("upstream", "error"));
+    }
+
+    @Test
+    void testFallbackCountedByReason() {
+        metrics.fallback(WeatherMetrics.FallbackReason.API_ERROR);
+        metrics.fallback(WeatherMetrics.FallbackReason.MOCK_BY_REQUEST);
+        metrics.fallback(WeatherMetrics.FallbackReason.MOCK_BY_REQUEST);
+
+        assertEquals(1, fallbackCount("api-error"));
+        assertEquals(0, fallbackCount("exception"));
+        assertEquals(2, fallbackCount("mock-by-request"));
+    }
+
+    private long stageCount(String stage, String outcome) {
+        return registry.get(WeatherMetrics.STAGE_TIMER).tag("stage", stage).tag("outcome", outcome).timer().count();
+    }
+
+    private double fallbackCount(String reason) {
+        return registry.get(WeatherMetrics.FALLBACK_COUNTER).tag("reason", reason).counter().count();
+    }
+}
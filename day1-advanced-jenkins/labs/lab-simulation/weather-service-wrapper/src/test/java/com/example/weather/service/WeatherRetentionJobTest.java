@@ -0,0 +1,118 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import com.example.weather.model.WeatherHourlyRollup;
+import com.example.weather.repository.WeatherArchivedCountRepository;
+import com.example.weather.repository.WeatherDailyRollupRepository;
+import com.example.weather.repository.WeatherDataRepository;
+import com.example.weather.repository.WeatherHourlyRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Import({WeatherRetentionJob.class, WeatherVersions.class, CityRegistry.class})
+class WeatherRetentionJobTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusMinutes(30);
+
+    @Autowired
+    private WeatherRetentionJob retentionJob;
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    @Autowired
+    private WeatherHourlyRollupRepository hourlyRollupRepository;
+
+    @Autowired
+    private WeatherDailyRollupRepository dailyRollupRepository;
+
+    @Autowired
+    private WeatherArchivedCountRepository archivedCountRepository;
+
+    @Autowired
+    private CityRegistry cityRegistry;
+
+    @Test
+    void testRollsUpAndDeletesExpiredReadings() {
+        LocalDateTime oldHour = NOW.minusDays(10).truncatedTo(ChronoUnit.HOURS);
+        weatherDataRepository.saveAllAndFlush(List.of(
+                reading("Bucharest", 20.0, 60, "api", oldHour.plusMinutes(5)),
+                reading("Bucharest", 24.0, 70, "mock", oldHour.plusMinutes(40)),
+                reading("London", 15.0, 80, "api", oldHour.plusMinutes(10)),
+                reading("Bucharest", 22.0, 65, "mock", NOW.minusHours(2))));
+
+        assertEquals(2, retentionJob.rollUpHours(NOW));
+        assertEquals(3, retentionJob.deleteExpiredReadings(NOW));
+
+        WeatherHourlyRollup bucharest = hourlyRollupRepository
+                .findPage(cityRegistry.find("Bucharest").getId(), oldHour, oldHour.plusHours(1), Limit.of(10)).get(0);
+        assertEquals(2, bucharest.getSampleCount());
+        assertEquals(20.0, bucharest.getMinTemperature());
+        assertEquals(24.0, bucharest.getMaxTemperature());
+        assertEquals(22.0, bucharest.getAvgTemperature());
+        assertEquals(65.0, bucharest.getAvgHumidity());
+
+        assertEquals(1, weatherDataRepository.count());
+        assertEquals(3, archivedCountRepository.findAll().stream().mapToLong(c -> c.getRequestCount()).sum());
+    }
+
+    @Test
+    void testRollsUpCompleteDays() {
+        LocalDateTime day = NOW.minusDays(3).truncatedTo(ChronoUnit.DAYS);
+        weatherDataRepository.saveAllAndFlush(List.of(
+                reading("Paris", 10.0, 50, "api", day.plusHours(1)),
+                reading("Paris", 30.0, 70, "api", day.plusHours(13)),
+                reading("Paris", 18.0, 55, "api", NOW.minusHours(1))));
+
+        retentionJob.rollUpHours(NOW);
+        retentionJob.rollUpDays();
+
+        var daily = dailyRollupRepository.findPage(cityRegistry.find("Paris").getId(), day, day.plusDays(1), Limit.of(10));
+        assertEquals(1, daily.size());
+        assertEquals(2, daily.get(0).getSampleCount());
+        assertEquals(20.0, daily.get(0).getAvgTemperature());
+    }
+
+    @Test
+    void testAddsLateReadingsToRolledUpBuckets() {
+        LocalDateTime day = NOW.minusDays(3).truncatedTo(ChronoUnit.DAYS);
+        weatherDataRepository.saveAllAndFlush(List.of(
+                reading("Oslo", 10.0, 50, "api", day.plusHours(1)),
+                reading("Oslo", 18.0, 55, "api", NOW.minusHours(1))));
+        retentionJob.rollUpHours(NOW);
+        retentionJob.rollUpDays();
+
+        // Flushed by the write-behind queue after its hour and day were rolled up
+        weatherDataRepository.saveAndFlush(reading("Oslo", 30.0, 70, "api", day.plusHours(1).plusMinutes(20)));
+        assertEquals(0, retentionJob.rollUpHours(NOW));
+        assertEquals(1, retentionJob.rollUpLateReadings());
+        assertEquals(0, retentionJob.rollUpLateReadings());
+
+        int oslo = cityRegistry.find("Oslo").getId();
+        WeatherHourlyRollup hourly = hourlyRollupRepository
+                .findPage(oslo, day.plusHours(1), day.plusHours(2), Limit.of(10)).get(0);
+        assertEquals(2, hourly.getSampleCount());
+        assertEquals(30.0, hourly.getMaxTemperature());
+        var daily = dailyRollupRepository.findPage(oslo, day, day.plusDays(1), Limit.of(10));
+        assertEquals(2, daily.get(0).getSampleCount());
+        assertEquals(20.0, daily.get(0).getAvgTemperature());
+    }
+
+    private WeatherData reading(String city, double temperature, int humidity, String source,
+                                LocalDateTime timestamp) {
+        WeatherData weatherData = new WeatherData(city, temperature, "Clear", humidity, 1013.0, 3.0, source);
+        weatherData.setCity(cityRegistry.resolve(city));
+        weatherData.setTimestamp(timestamp);
+        return weatherData;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherResponse;
+import com.example.weather.model.City;
+import com.example.weather.model.WeatherData;
+import com.example.weather.model.WeatherResolution;
+import com.example.weather.model.WeatherRollup;
+import com.example.weather.repository.CityRepository;
+import com.example.weather.repository.WeatherDataRepository;
+import com.example.weather.stub.LatencyDistribution;
+import com.example.weather.stub.OpenWeatherMapStub;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the whole application against an {@link OpenWeatherMapStub} on a free port.
+ */
+@SpringBootTest
+class WeatherServiceTest {
+
+    private static final OpenWeatherMapStub STUB = new OpenWeatherMapStub("localhost", 0,
+            new LatencyDistribution(LatencyDistribution.Type.FIXED,
+                    Duration.ZERO, Duration.ZERO, Duration.ofMillis(100), Duration.ofMillis(100)),
+            0, 0, 42);
+
+    @Autowired
+    private WeatherService weatherService;
+
+    @Autowired
+    private OpenWeatherMapService openWeatherMapService;
+
+    @Autowired
+    private CityRegistry cityRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private WeatherDataRepository weatherDataRepository;
+
+    @Autowired
+    private WeatherRetentionJob retentionJob;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @DynamicPropertySource
+    static void upstream(DynamicPropertyRegistry registry) {
+        STUB.start();
+        registry.add("weather.api.base-url", () -> "http://localhost:" + STUB.port() + "/data/2.5");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        STUB.stop();
+    }
+
+    @Test
+    void testConcurrentMissesShareOneUpstreamCall() {
+        City city = cityRegistry.resolve("Oslo");
+        long before = STUB.requests();
+
+        List<WeatherData> readings = Flux.range(0, 20)
+                .flatMap(i -> openWeatherMapService.getCachedWeatherData(city))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(20, readings.size());
+        assertEquals(1, readings.stream().distinct().count());
+        assertEquals(before + 1, STUB.requests());
+    }
+
+    @Test
+    void testFailedLookupIsNotCached() {
+        // The upstream rejects a blank city name with a 400, which is not retried
+        City city = new City(-1, " ", " ");
+        long before = STUB.requests();
+
+        for (int i = 0; i < 2; i++) {
+            Throwable error = openWeatherMapService.getCachedWeatherData(city)
+                    .then(Mono.<Throwable>empty())
+                    .onErrorResume(Mono::just)
+                    .block(Duration.ofSeconds(5));
+            assertInstanceOf(WebClientResponseException.BadRequest.class, error);
+        }
+
+        assertEquals(before + 2, STUB.requests());
+    }
+
+    @Test
+    void testRollupPagesIncludeReadingsAfterTheLastRollup() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldDay = now.minusDays(3).truncatedTo(ChronoUnit.DAYS);
+        store("Lisbon", 10.0, oldDay.plusHours(1));
+        retentionJob.rollUpHours(now);
+        retentionJob.rollUpDays();
+        // The current hour and day are not rolled up yet
+        store("Lisbon", 20.0, now);
+        store("Lisbon", 30.0, now);
+
+        List<? extends WeatherRollup> hourly = weatherService
+                .getRecentRollups("Lisbon", 24 * 30, WeatherResolution.HOURLY, null, 10).items();
+        assertEquals(now.truncatedTo(ChronoUnit.HOURS), hourly.get(0).getBucketStart());
+        assertEquals(2, hourly.get(0).getSampleCount());
+        assertEquals(25.0, hourly.get(0).getAvgTemperature());
+        assertEquals(oldDay.plusHours(1), hourly.get(1).getBucketStart());
+
+        List<? extends WeatherRollup> daily = weatherService
+                .getRecentRollups("Lisbon", 24 * 180, WeatherResolution.DAILY, null, 10).items();
+        assertEquals(now.truncatedTo(ChronoUnit.DAYS), daily.get(0).getBucketStart());
+        assertEquals(2, daily.get(0).getSampleCount());
+        assertEquals(oldDay, daily.get(1).getBucketStart());
+        assertEquals(1, daily.get(1).getSampleCount());
+    }
+
+    @Test
+    void testFullRegistryServesNewCitiesWithoutStoringThem() {
+        CityRegistry full = new CityRegistry(cityRepository, 0);
+        full.load();
+        WeatherService target = AopTestUtils.getTargetObject(weatherService);
+        ReflectionTestUtils.setField(target, "cityRegistry", full);
+        try {
+            WeatherResponse real = weatherService.getWeatherData("Sibiu", true).block(Duration.ofSeconds(5));
+            WeatherResponse mock = weatherService.getWeatherData("Sibiu", false).block(Duration.ofSeconds(5));
+
+            assertEquals("api", real.getSource());
+            assertEquals("mock", mock.getSource());
+            assertTrue(cityRepository.findByCityKey("sibiu").isEmpty());
+        } finally {
+            ReflectionTestUtils.setField(target, "cityRegistry", cityRegistry);
+        }
+    }
+
+    @Test
+    void testOpenCircuitFallsBackToMockWithoutUpstreamCall() {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(OpenWeatherMapService.RESILIENCE_INSTANCE);
+        long before = STUB.requests();
+        circuitBreaker.transitionToOpenState();
+        try {
+            WeatherResponse response = weatherService.getWeatherData("Reykjavik", true).block(Duration.ofSeconds(5));
+
+            assertEquals("mock", response.getSource());
+            assertEquals(before, STUB.requests());
+        } finally {
+            circuitBreaker.reset();
+        }
+    }
+
+    private void store(String cityName, double temperature, LocalDateTime timestamp) {
+        WeatherData weatherData = new WeatherData(cityName, temperature, "Clear", 60, 1013.0, 3.0, "api");
+        weatherData.setCity(cityRegistry.resolve(cityName));
+        weatherData.setTimestamp(timestamp);
+        weatherDataRepository.saveAndFlush(weatherData);
+    }
+}
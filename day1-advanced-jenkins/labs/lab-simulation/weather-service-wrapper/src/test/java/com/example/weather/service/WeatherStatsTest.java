@@ -0,0 +1,111 @@
+package com.example.weather.service;
+
+import com.example.weather.model.WeatherData;
+import com.example.weather.repository.WeatherArchivedCountRepository;
+import com.example.weather.repository.WeatherDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringJUnitConfig(WeatherStats.class)
+class WeatherStatsTest {
+
+    @Autowired
+    private WeatherStats weatherStats;
+
+    @MockBean
+    private WeatherDataRepository weatherDataRepository;
+
+    @MockBean
+    private WeatherArchivedCountRepository archivedCountRepository;
+
+    @MockBean
+    private WeatherVersions weatherVersions;
+
+    @MockBean
+    private CityRegistry cityRegistry;
+
+    // The weather_data table
+    private final List<WeatherData> rows = new CopyOnWriteArrayList<>();
+    private CompletableFuture<Void> insert;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            rows.add(reading());
+        }
+    }
+
+    @Test
+    void testReadingPersistedDuringRebuildIsCountedOnce() throws Exception {
+        when(weatherDataRepository.findSourceAndCityCounts()).thenAnswer(countsWhileInserting(reading()));
+
+        weatherStats.rebuild();
+        insert.get(5, TimeUnit.SECONDS);
+
+        assertEquals(4, rows.size());
+        assertEquals(4, weatherStats.getCountBySource("api"));
+    }
+
+    @Test
+    void testVerifyDuringInsertDoesNotRebuild() throws Exception {
+        when(weatherDataRepository.findSourceAndCityCounts()).thenAnswer(invocation -> counts());
+        weatherStats.rebuild();
+        when(weatherDataRepository.findSourceAndCityCounts()).thenAnswer(countsWhileInserting(reading()));
+
+        weatherStats.verify();
+        insert.get(5, TimeUnit.SECONDS);
+
+        verify(weatherVersions, times(1)).recordStatsRebuilt();
+        assertEquals(4, weatherStats.getCountBySource("api"));
+    }
+
+    /**
+     * Starts inserting a reading while the database is being counted, and gives it time to
+     * commit and be recorded before the count is read.
+     */
+    private Answer<List<Object[]>> countsWhileInserting(WeatherData reading) {
+        return invocation -> {
+            insert = CompletableFuture.runAsync(() -> weatherStats.persist(() -> {
+                rows.add(reading);
+                weatherStats.record(reading);
+            }));
+            try {
+                insert.get(200, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Held back by the barrier
+            }
+            return counts();
+        };
+    }
+
+    private List<Object[]> counts() {
+        Map<List<Object>, Long> counts = rows.stream()
+                .collect(Collectors.groupingBy(row -> List.of(row.getSource(), row.getCityId()), Collectors.counting()));
+        return counts.entrySet().stream()
+                .map(entry -> new Object[]{entry.getKey().get(0), entry.getKey().get(1), entry.getValue()})
+                .toList();
+    }
+
+    private static WeatherData reading() {
+        WeatherData reading = new WeatherData("Bucharest", 20.0, "clear sky", 60, 1013.0, 3.0, "api");
+        reading.setCityId(1);
+        return reading;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.weather.service;
+
+import com.example.weather.dto.WeatherResponse;
+import com.example.weather.repository.CityRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WeatherStreamServiceTest {
+
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final WeatherStreamService streamService = new WeatherStreamService(weatherService,
+            new CityRegistry(mock(CityRepository.class), 100), Duration.ofMillis(100), Duration.ZERO, new SimpleMeterRegistry());
+
+    @Test
+    void testSubscribersOfOneCityShareTheProducer() {
+        when(weatherService.getWeatherData(anyString(), anyBoolean())).thenAnswer(invocation -> Mono.fromSupplier(() ->
+                new WeatherResponse(invocation.getArgument(0), 20.0 + lookups.incrementAndGet(), "Sunny", 50, 1013.0, 3.0, "mock")));
+
+        Tuple2<List<WeatherResponse>, List<WeatherResponse>> received = Mono.zip(
+                streamService.stream("London", false).take(3).collectList(),
+                streamService.stream(" london ", false).take(3).collectList())
+                .block(Duration.ofSeconds(5));
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(received.getT1().get(i), received.getT2().get(i));
+        }
+        assertTrue(lookups.get() <= 4, "one lookup per interval, not per subscriber: " + lookups.get());
+    }
+
+    @Test
+    void testProducerStopsAfterLastSubscriberLeaves() {
+        when(weatherService.getWeatherData(anyString(), anyBoolean()))
+                .thenAnswer(invocation -> Mono.just(WeatherResponse.error(invocation.getArgument(0), "down")));
+
+        Flux.merge(streamService.stream("Paris", false).take(1), streamService.stream("Tokyo", true).take(1))
+                .blockLast(Duration.ofSeconds(5));
+
+        assertEquals(0, streamService.activeStreams());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.weather.stub;
+
+import com.example.weather.dto.OpenWeatherMapGroupResponse;
+import com.example.weather.dto.OpenWeatherMapResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenWeatherMapStubTest {
+
+    private static final LatencyDistribution NO_DELAY = new LatencyDistribution(LatencyDistribution.Type.FIXED,
+            Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+    private OpenWeatherMapStub stub;
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void testServesCurrentWeatherPayload() {
+        stub = new OpenWeatherMapStub("localhost", 0, NO_DELAY, 0, 0, 42);
+        stub.start();
+
+        OpenWeatherMapResponse response = client().get()
+                .uri(uri -> uri.path("/weather").queryParam("q", "Bucharest \"Old Town\"").build())
+                .retrieve()
+                .bodyToMono(OpenWeatherMapResponse.class)
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("Bucharest \"Old Town\"", response.name());
+        assertTrue(response.main().humidity() >= 30 && response.main().humidity() < 90);
+        assertEquals(1, response.weather().size());
+    }
+
+    @Test
+    void testGroupCallAnswersForKnownIds() {
+        stub = new OpenWeatherMapStub("localhost", 0, NO_DELAY, 0, 0, 42);
+        stub.start();
+        long london = currentWeather("London").id();
+        long paris = currentWeather("Paris").id();
+
+        OpenWeatherMapGroupResponse group = client().get()
+                .uri(uri -> uri.path("/group").queryParam("id", london + "," + paris + ",1").build())
+                .retrieve()
+                .bodyToMono(OpenWeatherMapGroupResponse.class)
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("London", "Paris"), group.list().stream().map(OpenWeatherMapResponse::name).toList());
+        assertEquals(List.of(london, paris), group.list().stream().map(OpenWeatherMapResponse::id).toList());
+        assertEquals(london, currentWeather(" LONDON").id());
+        assertEquals(4, stub.requests());
+    }
+
+    @Test
+    void testInjectsErrors() {
+        stub = new OpenWeatherMapStub("localhost", 0, NO_DELAY, 1.0, 0, 42);
+        stub.start();
+
+        assertThrows(WebClientResponseException.InternalServerError.class, () -> client().get()
+                .uri(uri -> uri.path("/weather").queryParam("q", "London").build())
+                .retrieve()
+                .bodyToMono(OpenWeatherMapResponse.class)
+                .block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testLognormalLatencyMatchesMedianAndP99() {
+        LatencyDistribution latency = new LatencyDistribution(LatencyDistribution.Type.LOGNORMAL,
+                Duration.ZERO, Duration.ZERO, Duration.ofMillis(80), Duration.ofMillis(400));
+        SplittableRandom random = new SplittableRandom(7);
+        long[] samples = new long[100_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = latency.sample(random).toMillis();
+        }
+        Arrays.sort(samples);
+
+        assertEquals(80, samples[samples.length / 2], 4);
+        assertEquals(400, samples[samples.length * 99 / 100], 30);
+    }
+
+    private OpenWeatherMapResponse currentWeather(String city) {
+        return client().get()
+                .uri(uri -> uri.path("/weather").queryParam("q", city).build())
+                .retrieve()
+                .bodyToMono(OpenWeatherMapResponse.class)
+                .block(Duration.ofSeconds(5));
+    }
+
+    private WebClient client() {
+        return WebClient.create("http://localhost:" + stub.port() + "/data/2.5");
+    }
+}